@@ -0,0 +1,26 @@
+package com.p2pchat.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Routing table and transport implementations for cluster mode.
+ * cluster.transport selects the implementation; "loopback" runs every
+ * node inside one JVM.
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "cluster.transport", havingValue = "loopback", matchIfMissing = true)
+    public ClusterRoutingTable loopbackRoutingTable() {
+        return new LoopbackRoutingTable();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "cluster.transport", havingValue = "loopback", matchIfMissing = true)
+    public NodeTransport loopbackNodeTransport() {
+        return new LoopbackNodeTransport();
+    }
+}
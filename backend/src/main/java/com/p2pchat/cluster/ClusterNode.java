@@ -0,0 +1,128 @@
+package com.p2pchat.cluster;
+
+import com.p2pchat.dto.SignalingMessage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * This instance's membership in the signaling cluster.
+ *
+ * Publishes ownership of locally connected peers to the routing table and
+ * forwards messages for peers owned by other nodes over the node transport.
+ * A peer with tabs on several nodes is owned by each of them, and a node
+ * only ever withdraws its own ownership.
+ * All operations are no-ops unless cluster.enabled is set.
+ */
+@Service
+public class ClusterNode {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterNode.class);
+
+    private final ClusterRoutingTable routingTable;
+    private final NodeTransport transport;
+    private final boolean enabled;
+    private final String nodeId;
+
+    public ClusterNode(ClusterRoutingTable routingTable, NodeTransport transport,
+                       @Value("${cluster.enabled:false}") boolean enabled,
+                       @Value("${cluster.node-id:}") String nodeId) {
+        this.routingTable = routingTable;
+        this.transport = transport;
+        this.enabled = enabled;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+    }
+
+    /**
+     * Start receiving messages forwarded by other nodes; localDelivery
+     * reports whether a local session took the message
+     */
+    public void start(Predicate<SignalingMessage> localDelivery) {
+        if (enabled) {
+            transport.join(nodeId, localDelivery);
+            log.info("🌐 Joined signaling cluster as node {}", nodeId);
+        }
+    }
+
+    /**
+     * Publish that a peer is connected to this node
+     */
+    public void claim(String peerId) {
+        if (enabled) {
+            routingTable.claim(peerId, nodeId);
+        }
+    }
+
+    /**
+     * Withdraw this node's ownership of a peer
+     */
+    public void release(String peerId) {
+        if (enabled) {
+            routingTable.release(peerId, nodeId);
+        }
+    }
+
+    /**
+     * Forward a message to the other nodes the target peer is connected to
+     *
+     * @return true only if some other node delivered the message to the peer
+     */
+    public boolean forward(SignalingMessage message) {
+        if (!enabled) {
+            return false;
+        }
+        boolean forwarded = false;
+        for (String owner : routingTable.ownersOf(message.getTo())) {
+            if (owner.equals(nodeId)) {
+                continue;
+            }
+            if (transport.send(owner, message)) {
+                forwarded = true;
+            } else {
+                // Unreachable, or the peer's session there closed since it was claimed
+                log.warn("⚠️ Node {} could not deliver {} to peer {}", owner, message.getType(), message.getTo());
+            }
+        }
+        return forwarded;
+    }
+
+    /**
+     * Whether a peer is connected to any node of the cluster
+     */
+    public boolean isClaimed(String peerId) {
+        return enabled && peerId != null && !routingTable.ownersOf(peerId).isEmpty();
+    }
+
+    /**
+     * Whether a peer is connected to a node of the cluster other than this one
+     */
+    public boolean isClaimedElsewhere(String peerId) {
+        if (!enabled || peerId == null) {
+            return false;
+        }
+        Set<String> owners = routingTable.ownersOf(peerId);
+        return owners.size() > (owners.contains(nodeId) ? 1 : 0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (enabled) {
+            transport.leave(nodeId);
+            routingTable.releaseAll(nodeId);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.p2pchat.cluster;
+
+import java.util.Set;
+
+/**
+ * Cluster-wide table of which nodes each online peer is connected to.
+ * A peer with tabs on several nodes is owned by all of them.
+ */
+public interface ClusterRoutingTable {
+
+    /**
+     * Record that a peer is connected to a node
+     */
+    void claim(String peerId, String nodeId);
+
+    /**
+     * Remove the given node's ownership of a peer, leaving other nodes' in place
+     */
+    void release(String peerId, String nodeId);
+
+    /**
+     * Remove every ownership held by a node
+     */
+    void releaseAll(String nodeId);
+
+    /**
+     * Get the nodes a peer is connected to, or an empty set if it is not online
+     */
+    Set<String> ownersOf(String peerId);
+}
@@ -0,0 +1,42 @@
+package com.p2pchat.cluster;
+
+import com.p2pchat.dto.SignalingMessage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * In-process transport between nodes running in the same JVM.
+ * Messages are copied so that nodes never share a mutable instance.
+ */
+public class LoopbackNodeTransport implements NodeTransport {
+
+    // Shared across application contexts: nodeId -> receiver
+    private static final Map<String, Predicate<SignalingMessage>> NODES = new ConcurrentHashMap<>();
+
+    @Override
+    public void join(String nodeId, Predicate<SignalingMessage> receiver) {
+        NODES.put(nodeId, receiver);
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        NODES.remove(nodeId);
+    }
+
+    @Override
+    public boolean send(String nodeId, SignalingMessage message) {
+        Predicate<SignalingMessage> receiver = NODES.get(nodeId);
+        if (receiver == null) {
+            return false;
+        }
+        return receiver.test(new SignalingMessage(
+            message.getType(),
+            message.getFrom(),
+            message.getTo(),
+            message.getPayload(),
+            message.getTimestamp()
+        ));
+    }
+}
@@ -0,0 +1,59 @@
+package com.p2pchat.cluster;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process routing table shared by every node running in the same JVM
+ */
+public class LoopbackRoutingTable implements ClusterRoutingTable {
+
+    // Shared across application contexts: peerId -> nodeIds, replaced on change
+    private static final Map<String, Set<String>> OWNERS = new ConcurrentHashMap<>();
+
+    @Override
+    public void claim(String peerId, String nodeId) {
+        OWNERS.compute(peerId, (id, owners) -> {
+            if (owners == null) {
+                return Set.of(nodeId);
+            }
+            if (owners.contains(nodeId)) {
+                return owners;
+            }
+            return with(owners, nodeId);
+        });
+    }
+
+    @Override
+    public void release(String peerId, String nodeId) {
+        OWNERS.computeIfPresent(peerId, (id, owners) -> without(owners, nodeId));
+    }
+
+    @Override
+    public void releaseAll(String nodeId) {
+        OWNERS.keySet().forEach(peerId -> release(peerId, nodeId));
+    }
+
+    @Override
+    public Set<String> ownersOf(String peerId) {
+        return OWNERS.getOrDefault(peerId, Set.of());
+    }
+
+    private static Set<String> with(Set<String> owners, String nodeId) {
+        String[] updated = owners.toArray(new String[owners.size() + 1]);
+        updated[owners.size()] = nodeId;
+        return Set.of(updated);
+    }
+
+    // Null once the last owner is gone, which drops the peer
+    private static Set<String> without(Set<String> owners, String nodeId) {
+        if (!owners.contains(nodeId)) {
+            return owners;
+        }
+        if (owners.size() == 1) {
+            return null;
+        }
+        return Set.of(owners.stream().filter(owner -> !owner.equals(nodeId)).toArray(String[]::new));
+    }
+}
@@ -0,0 +1,30 @@
+package com.p2pchat.cluster;
+
+import com.p2pchat.dto.SignalingMessage;
+
+import java.util.function.Predicate;
+
+/**
+ * Node-to-node transport for forwarding signaling messages to the node a
+ * target peer is connected to
+ */
+public interface NodeTransport {
+
+    /**
+     * Start receiving messages addressed to a node. The receiver reports
+     * whether it delivered the message to a local session.
+     */
+    void join(String nodeId, Predicate<SignalingMessage> receiver);
+
+    /**
+     * Stop receiving messages addressed to a node
+     */
+    void leave(String nodeId);
+
+    /**
+     * Forward a message to a node and wait for its receiver's answer
+     *
+     * @return false if the node is not reachable or could not deliver the message
+     */
+    boolean send(String nodeId, SignalingMessage message);
+}
@@ -1,15 +1,72 @@
 package com.p2pchat.config;
 
+import com.p2pchat.websocket.GroupTopicInterceptor;
+import com.p2pchat.websocket.PeerSubscriptionRegistry;
+import com.p2pchat.websocket.SignalRateLimiter;
+import com.p2pchat.websocket.SignalingLaneExecutor;
+import com.p2pchat.websocket.SignalingMetrics;
+import com.p2pchat.websocket.SlowConsumerGuard;
+import com.p2pchat.websocket.StompAuthenticationInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompAuthenticationInterceptor stompAuthenticationInterceptor;
+    private final GroupTopicInterceptor groupTopicInterceptor;
+    private final PeerSubscriptionRegistry peerSubscriptionRegistry;
+    private final SignalRateLimiter signalRateLimiter;
+    private final SlowConsumerGuard slowConsumerGuard;
+    private final MeterRegistry meterRegistry;
+    private final SignalingMetrics signalingMetrics;
+
+    @Value("${signaling.lanes.relay-pool-size:4}")
+    private int relayPoolSize;
+
+    @Value("${signaling.lanes.blocking-virtual-threads:true}")
+    private boolean blockingVirtualThreads;
+
+    @Value("${signaling.lanes.blocking-pool-size:32}")
+    private int blockingPoolSize;
+
+    @Value("${signaling.outbound.pool-size:4}")
+    private int outboundPoolSize;
+
+    @Value("${signaling.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimitMillis;
+
+    @Value("${signaling.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${signaling.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    public WebSocketConfig(StompAuthenticationInterceptor stompAuthenticationInterceptor,
+                           GroupTopicInterceptor groupTopicInterceptor,
+                           PeerSubscriptionRegistry peerSubscriptionRegistry,
+                           SignalRateLimiter signalRateLimiter,
+                           SlowConsumerGuard slowConsumerGuard,
+                           MeterRegistry meterRegistry,
+                           SignalingMetrics signalingMetrics) {
+        this.stompAuthenticationInterceptor = stompAuthenticationInterceptor;
+        this.groupTopicInterceptor = groupTopicInterceptor;
+        this.peerSubscriptionRegistry = peerSubscriptionRegistry;
+        this.signalRateLimiter = signalRateLimiter;
+        this.slowConsumerGuard = slowConsumerGuard;
+        this.meterRegistry = meterRegistry;
+        this.signalingMetrics = signalingMetrics;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Enable simple in-memory broker for pub/sub messaging
@@ -29,5 +86,39 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
-}
 
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Bound what a stalled session may hold; past either limit it is closed
+        registration.setSendTimeLimit(sendTimeLimitMillis)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit)
+                .addDecoratorFactory(slowConsumerGuard);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Bind the authenticated user to the session at CONNECT, drop signal frames over the
+        // session's rate limit, authorize group topic subscriptions, then track personal
+        // topic subscriptions for direct session delivery
+        registration.interceptors(stompAuthenticationInterceptor, signalRateLimiter, groupTopicInterceptor,
+                peerSubscriptionRegistry);
+        
+        // Split relay traffic from database-touching work
+        SignalingLaneExecutor executor = new SignalingLaneExecutor(
+            relayPoolSize, blockingVirtualThreads, blockingPoolSize, meterRegistry, signalingMetrics);
+        signalingMetrics.monitorInboundChannel(executor);
+        registration.taskExecutor(executor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Shed low-priority frames for sessions that stopped reading
+        registration.interceptors(slowConsumerGuard);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(outboundPoolSize);
+        executor.setMaxPoolSize(outboundPoolSize);
+        signalingMetrics.monitorOutboundChannel(executor);
+        registration.taskExecutor(executor);
+    }
+}
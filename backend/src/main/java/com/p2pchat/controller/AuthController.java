@@ -4,10 +4,16 @@ import com.p2pchat.dto.AuthRequest;
 import com.p2pchat.dto.AuthResponse;
 import com.p2pchat.entity.User;
 import com.p2pchat.security.JwtUtil;
+import com.p2pchat.security.PasswordHashingPool;
 import com.p2pchat.service.UserService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/auth")
 @CrossOrigin(origins = "*")
@@ -15,10 +21,12 @@ public class AuthController {
 
     private final UserService userService;
     private final JwtUtil jwtUtil;
+    private final PasswordHashingPool passwordHashingPool;
     
-    public AuthController(UserService userService, JwtUtil jwtUtil) {
+    public AuthController(UserService userService, JwtUtil jwtUtil, PasswordHashingPool passwordHashingPool) {
         this.userService = userService;
         this.jwtUtil = jwtUtil;
+        this.passwordHashingPool = passwordHashingPool;
     }
 
     @PostMapping("/register")
@@ -30,7 +38,7 @@ public class AuthController {
                 request.getUsername() + "@p2pchat.com"
             );
 
-            String token = jwtUtil.generateToken(user.getUsername(), user.getUserId());
+            String token = jwtUtil.generateToken(user.getUsername(), user.getUserId(), user.getPeerId());
 
             AuthResponse response = new AuthResponse(
                 token,
@@ -46,16 +54,35 @@ public class AuthController {
         }
     }
 
+    /**
+     * The password check runs on the hashing pool and the servlet thread is
+     * released meanwhile; when the pool is backed up the login is refused
+     * with 429 straight away
+     */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody AuthRequest request) {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody AuthRequest request) {
+        User user;
+        try {
+            user = userService.findByUsername(request.getUsername());
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Invalid credentials"));
+        }
+
+        CompletableFuture<Boolean> passwordMatches;
         try {
-            User user = userService.findByUsername(request.getUsername());
+            passwordMatches = passwordHashingPool.matches(request.getPassword(), user.getPassword());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Too many login attempts, try again shortly"));
+        }
 
-            if (!userService.validatePassword(request.getPassword(), user.getPassword())) {
+        return passwordMatches.handle((matches, error) -> {
+            if (error != null || !matches) {
                 return ResponseEntity.badRequest().body("Invalid credentials");
             }
 
-            String token = jwtUtil.generateToken(user.getUsername(), user.getUserId());
+            String token = jwtUtil.generateToken(user.getUsername(), user.getUserId(), user.getPeerId());
 
             AuthResponse response = new AuthResponse(
                 token,
@@ -66,9 +93,7 @@ public class AuthController {
             );
 
             return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body("Invalid credentials");
-        }
+        });
     }
 }
 
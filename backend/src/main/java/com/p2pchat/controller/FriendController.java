@@ -1,7 +1,9 @@
 package com.p2pchat.controller;
 
+import com.p2pchat.security.UserPrincipal;
 import com.p2pchat.service.FriendService;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -18,13 +20,24 @@ public class FriendController {
     }
 
     @GetMapping
-    public ResponseEntity<List<Long>> getFriends(@RequestParam Long userId) {
-        return ResponseEntity.ok(friendService.getFriends(userId));
+    public ResponseEntity<List<Long>> getFriends(@AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(friendService.getFriends(principal.getUserId()));
+    }
+
+    @GetMapping("/mutual")
+    public ResponseEntity<List<Long>> getMutualFriends(@RequestParam Long otherUserId, @AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(friendService.getMutualFriends(principal.getUserId(), otherUserId));
+    }
+
+    @GetMapping("/suggestions")
+    public ResponseEntity<List<Long>> getFriendSuggestions(@AuthenticationPrincipal UserPrincipal principal,
+                                                           @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(friendService.getFriendSuggestions(principal.getUserId(), Math.min(Math.max(limit, 1), 100)));
     }
 
     @PostMapping("/add")
-    public ResponseEntity<?> addFriend(@RequestParam Long friendId, @RequestParam Long userId) {
-        boolean success = friendService.addFriend(userId, friendId);
+    public ResponseEntity<?> addFriend(@RequestParam Long friendId, @AuthenticationPrincipal UserPrincipal principal) {
+        boolean success = friendService.addFriend(principal.getUserId(), friendId);
         if (success) {
             return ResponseEntity.ok(Map.of("message", "Friend added"));
         }
@@ -32,8 +45,8 @@ public class FriendController {
     }
 
     @DeleteMapping("/{friendId}")
-    public ResponseEntity<?> removeFriend(@PathVariable Long friendId, @RequestParam Long userId) {
-        friendService.removeFriend(userId, friendId);
+    public ResponseEntity<?> removeFriend(@PathVariable Long friendId, @AuthenticationPrincipal UserPrincipal principal) {
+        friendService.removeFriend(principal.getUserId(), friendId);
         return ResponseEntity.ok(Map.of("message", "Friend removed"));
     }
 }
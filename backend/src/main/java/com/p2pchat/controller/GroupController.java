@@ -1,9 +1,14 @@
 package com.p2pchat.controller;
 
 import com.p2pchat.dto.GroupDTO;
+import com.p2pchat.security.UserPrincipal;
 import com.p2pchat.service.GroupService;
 import com.p2pchat.service.RequestService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +19,8 @@ import java.util.Set;
 @CrossOrigin(origins = "*")
 public class GroupController {
 
+    private static final Logger log = LoggerFactory.getLogger(GroupController.class);
+
     private final GroupService groupService;
     private final RequestService requestService;
     
@@ -23,9 +30,10 @@ public class GroupController {
     }
 
     @PostMapping
-    public ResponseEntity<GroupDTO> createGroup(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<GroupDTO> createGroup(@AuthenticationPrincipal UserPrincipal principal,
+                                                @RequestBody Map<String, Object> request) {
         String groupName = (String) request.get("groupName");
-        Long creatorId = ((Number) request.get("creatorId")).longValue();
+        Long creatorId = principal.getUserId();
         
         @SuppressWarnings("unchecked")
         List<Number> memberIdsList = (List<Number>) request.get("memberIds");
@@ -33,57 +41,80 @@ public class GroupController {
             ? memberIdsList.stream().map(Number::longValue).collect(java.util.stream.Collectors.toSet())
             : null;
         
-        System.out.println("📝 Creating group '" + groupName + "' by creator " + creatorId);
-        System.out.println("📝 Member IDs to invite: " + memberIds);
+        log.debug("📝 Creating group '{}' by creator {}, inviting {}", groupName, creatorId, memberIds);
         
         // Create group with only creator
         GroupDTO group = groupService.createGroup(groupName, creatorId, memberIds);
         
-        // Send invitations to invited members (skip creator)
+        // Send invitations to invited members in one batch (creator is skipped)
         if (memberIds != null && !memberIds.isEmpty()) {
-            int invitationsSent = 0;
-            for (Long memberId : memberIds) {
-                // Don't send invitation to creator (they're already in the group)
-                if (!memberId.equals(creatorId)) {
-                    boolean sent = requestService.sendGroupInvitation(creatorId, memberId, group.getGroupId());
-                    if (sent) {
-                        invitationsSent++;
-                        System.out.println("✉️ Sent group invitation to user " + memberId);
-                    } else {
-                        System.out.println("⚠️ Failed to send invitation to user " + memberId + " (duplicate or error)");
-                    }
-                } else {
-                    System.out.println("⏭️ Skipping invitation for creator " + creatorId);
-                }
-            }
-            System.out.println("✅ Sent " + invitationsSent + " group invitations");
+            int invitationsSent = requestService.sendGroupInvitations(creatorId, memberIds, group.getGroupId());
+            log.info("✅ Sent {} invitations to group {}", invitationsSent, group.getGroupId());
         }
         
         return ResponseEntity.ok(group);
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<GroupDTO>> getUserGroups(@PathVariable Long userId) {
+    public ResponseEntity<List<GroupDTO>> getUserGroups(@PathVariable Long userId,
+                                                        @AuthenticationPrincipal UserPrincipal principal) {
+        if (!userId.equals(principal.getUserId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
         return ResponseEntity.ok(groupService.getUserGroups(userId));
     }
 
     @GetMapping("/{groupId}")
-    public ResponseEntity<GroupDTO> getGroup(@PathVariable Long groupId) {
+    public ResponseEntity<GroupDTO> getGroup(@PathVariable Long groupId,
+                                             @AuthenticationPrincipal UserPrincipal principal) {
+        if (!groupService.isMember(groupId, principal.getUserId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
         return ResponseEntity.ok(groupService.getGroup(groupId));
     }
 
     @PostMapping("/{groupId}/members")
     public ResponseEntity<GroupDTO> addMember(
             @PathVariable Long groupId,
-            @RequestBody Map<String, Long> request) {
+            @RequestBody Map<String, Long> request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        if (!groupService.isMember(groupId, principal.getUserId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
         Long userId = request.get("userId");
         return ResponseEntity.ok(groupService.addMember(groupId, userId));
     }
 
+    @PostMapping("/{groupId}/invitations")
+    public ResponseEntity<?> inviteMembers(
+            @PathVariable Long groupId,
+            @RequestBody Map<String, Object> request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        Long userId = principal.getUserId();
+        if (!groupService.isMember(groupId, userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Only group members can invite"));
+        }
+        
+        @SuppressWarnings("unchecked")
+        List<Number> memberIdsList = (List<Number>) request.get("memberIds");
+        List<Long> memberIds = memberIdsList != null
+            ? memberIdsList.stream().map(Number::longValue).toList()
+            : List.of();
+        
+        int invitationsSent = requestService.sendGroupInvitations(userId, memberIds, groupId);
+        return ResponseEntity.ok(Map.of("invitationsSent", invitationsSent));
+    }
+
     @DeleteMapping("/{groupId}/members/{userId}")
     public ResponseEntity<GroupDTO> removeMember(
             @PathVariable Long groupId,
-            @PathVariable Long userId) {
+            @PathVariable Long userId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        // Members may leave; only the creator may remove someone else
+        if (!userId.equals(principal.getUserId())
+                && !principal.getUserId().equals(groupService.getGroup(groupId).getCreatorId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
         return ResponseEntity.ok(groupService.removeMember(groupId, userId));
     }
 }
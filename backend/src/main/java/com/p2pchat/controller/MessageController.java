@@ -0,0 +1,64 @@
+package com.p2pchat.controller;
+
+import com.p2pchat.security.UserPrincipal;
+import com.p2pchat.service.MessageService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/messages")
+@CrossOrigin(origins = "*")
+public class MessageController {
+    private final MessageService messageService;
+
+    public MessageController(MessageService messageService) {
+        this.messageService = messageService;
+    }
+
+    /**
+     * History of a conversation, newest first, paged by the seq cursor
+     */
+    @GetMapping("/{conversationKey}")
+    public ResponseEntity<?> getHistory(@PathVariable String conversationKey,
+                                        @AuthenticationPrincipal UserPrincipal principal,
+                                        @RequestParam(required = false) Long before,
+                                        @RequestParam(defaultValue = "50") int limit) {
+        if (!messageService.canAccess(principal.getUserId(), conversationKey)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not part of this conversation"));
+        }
+        return ResponseEntity.ok(messageService.getHistory(conversationKey, before, limit));
+    }
+
+    /**
+     * Messages of a conversation after the given seq, oldest first
+     */
+    @GetMapping("/{conversationKey}/sync")
+    public ResponseEntity<?> sync(@PathVariable String conversationKey,
+                                  @AuthenticationPrincipal UserPrincipal principal,
+                                  @RequestParam(defaultValue = "0") long after,
+                                  @RequestParam(defaultValue = "100") int limit) {
+        if (!messageService.canAccess(principal.getUserId(), conversationKey)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Not part of this conversation"));
+        }
+        return ResponseEntity.ok(messageService.sync(conversationKey, after, limit));
+    }
+
+    /**
+     * Catch up on several conversations after a reconnect; the body maps
+     * conversation keys to the last seq the client has seen
+     */
+    @PostMapping("/sync")
+    public ResponseEntity<?> syncAll(@AuthenticationPrincipal UserPrincipal principal,
+                                     @RequestBody Map<String, Long> cursors,
+                                     @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(messageService.syncAll(principal.getUserId(), cursors, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.p2pchat.controller;
 
-import com.p2pchat.entity.Request;
+import com.p2pchat.dto.RequestDTO;
+import com.p2pchat.security.UserPrincipal;
+import com.p2pchat.service.PendingRequestVersions;
 import com.p2pchat.service.RequestService;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -13,15 +17,17 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class RequestController {
     private final RequestService requestService;
+    private final PendingRequestVersions pendingRequestVersions;
 
-    public RequestController(RequestService requestService) {
+    public RequestController(RequestService requestService, PendingRequestVersions pendingRequestVersions) {
         this.requestService = requestService;
+        this.pendingRequestVersions = pendingRequestVersions;
     }
 
     // Send friend request
     @PostMapping("/friend")
-    public ResponseEntity<?> sendFriendRequest(@RequestParam Long friendId, @RequestParam Long userId) {
-        boolean success = requestService.sendFriendRequest(userId, friendId);
+    public ResponseEntity<?> sendFriendRequest(@RequestParam Long friendId, @AuthenticationPrincipal UserPrincipal principal) {
+        boolean success = requestService.sendFriendRequest(principal.getUserId(), friendId);
         if (success) {
             return ResponseEntity.ok(Map.of("message", "Friend request sent"));
         }
@@ -33,36 +39,44 @@ public class RequestController {
     public ResponseEntity<?> sendGroupInvitation(
             @RequestParam Long toUserId, 
             @RequestParam Long groupId, 
-            @RequestParam Long userId) {
-        boolean success = requestService.sendGroupInvitation(userId, toUserId, groupId);
+            @AuthenticationPrincipal UserPrincipal principal) {
+        boolean success = requestService.sendGroupInvitation(principal.getUserId(), toUserId, groupId);
         if (success) {
             return ResponseEntity.ok(Map.of("message", "Group invitation sent"));
         }
         return ResponseEntity.badRequest().body(Map.of("error", "Invitation already exists"));
     }
 
-    // Get all pending requests
+    // Get all pending requests; answers 304 without a query while the list is unchanged
     @GetMapping("/pending")
-    public ResponseEntity<List<Request>> getPendingRequests(@RequestParam Long userId) {
-        return ResponseEntity.ok(requestService.getPendingRequests(userId));
+    public ResponseEntity<List<RequestDTO>> getPendingRequests(@AuthenticationPrincipal UserPrincipal principal, WebRequest webRequest) {
+        Long userId = principal.getUserId();
+        String etag = pendingRequestVersions.getETag(userId);
+        if (etag == null) {
+            return ResponseEntity.ok(requestService.getPendingRequests(userId));
+        }
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(requestService.getPendingRequests(userId));
     }
 
     // Get pending friend requests
     @GetMapping("/pending/friends")
-    public ResponseEntity<List<Request>> getPendingFriendRequests(@RequestParam Long userId) {
-        return ResponseEntity.ok(requestService.getPendingFriendRequests(userId));
+    public ResponseEntity<List<RequestDTO>> getPendingFriendRequests(@AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(requestService.getPendingFriendRequests(principal.getUserId()));
     }
 
     // Get pending group invitations
     @GetMapping("/pending/groups")
-    public ResponseEntity<List<Request>> getPendingGroupInvitations(@RequestParam Long userId) {
-        return ResponseEntity.ok(requestService.getPendingGroupInvitations(userId));
+    public ResponseEntity<List<RequestDTO>> getPendingGroupInvitations(@AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(requestService.getPendingGroupInvitations(principal.getUserId()));
     }
 
     // Accept request
     @PostMapping("/{requestId}/accept")
-    public ResponseEntity<?> acceptRequest(@PathVariable Long requestId, @RequestParam Long userId) {
-        boolean success = requestService.acceptRequest(requestId, userId);
+    public ResponseEntity<?> acceptRequest(@PathVariable Long requestId, @AuthenticationPrincipal UserPrincipal principal) {
+        boolean success = requestService.acceptRequest(requestId, principal.getUserId());
         if (success) {
             return ResponseEntity.ok(Map.of("message", "Request accepted"));
         }
@@ -71,8 +85,8 @@ public class RequestController {
 
     // Reject request
     @PostMapping("/{requestId}/reject")
-    public ResponseEntity<?> rejectRequest(@PathVariable Long requestId, @RequestParam Long userId) {
-        boolean success = requestService.rejectRequest(requestId, userId);
+    public ResponseEntity<?> rejectRequest(@PathVariable Long requestId, @AuthenticationPrincipal UserPrincipal principal) {
+        boolean success = requestService.rejectRequest(requestId, principal.getUserId());
         if (success) {
             return ResponseEntity.ok(Map.of("message", "Request rejected"));
         }
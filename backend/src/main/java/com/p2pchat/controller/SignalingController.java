@@ -1,9 +1,19 @@
 package com.p2pchat.controller;
 
 import com.p2pchat.dto.SignalingMessage;
-import com.p2pchat.entity.User.UserStatus;
-import com.p2pchat.service.PeerRegistry;
-import com.p2pchat.service.UserService;
+import com.p2pchat.offline.OfflineQueue;
+import com.p2pchat.security.UserPrincipal;
+import com.p2pchat.service.GroupService;
+import com.p2pchat.dto.MessageDTO;
+import com.p2pchat.service.IceCandidateCoalescer;
+import com.p2pchat.service.MessageService;
+import com.p2pchat.service.PeerDirectory;
+import com.p2pchat.service.PresenceService;
+import com.p2pchat.service.SignalingRelay;
+import com.p2pchat.websocket.SignalingMetrics;
+import com.p2pchat.websocket.SignalingMetrics.UndeliverableReason;
+import com.p2pchat.websocket.SlowConsumerGuard;
+import com.p2pchat.websocket.StompAuthenticationInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -13,6 +23,10 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.CrossOrigin;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Controller
 @CrossOrigin(origins = "*")
 public class SignalingController {
@@ -20,13 +34,29 @@ public class SignalingController {
     private static final Logger log = LoggerFactory.getLogger(SignalingController.class);
     
     private final SimpMessagingTemplate messagingTemplate;
-    private final UserService userService;
-    private final PeerRegistry peerRegistry;
+    private final SignalingRelay signalingRelay;
+    private final IceCandidateCoalescer iceCandidateCoalescer;
+    private final PresenceService presenceService;
+    private final GroupService groupService;
+    private final MessageService messageService;
+    private final PeerDirectory peerDirectory;
+    private final OfflineQueue offlineQueue;
+    private final SignalingMetrics signalingMetrics;
     
-    public SignalingController(SimpMessagingTemplate messagingTemplate, UserService userService, PeerRegistry peerRegistry) {
+    public SignalingController(SimpMessagingTemplate messagingTemplate,
+                               SignalingRelay signalingRelay, IceCandidateCoalescer iceCandidateCoalescer,
+                               PresenceService presenceService, GroupService groupService,
+                               MessageService messageService, PeerDirectory peerDirectory,
+                               OfflineQueue offlineQueue, SignalingMetrics signalingMetrics) {
         this.messagingTemplate = messagingTemplate;
-        this.userService = userService;
-        this.peerRegistry = peerRegistry;
+        this.signalingRelay = signalingRelay;
+        this.iceCandidateCoalescer = iceCandidateCoalescer;
+        this.presenceService = presenceService;
+        this.groupService = groupService;
+        this.messageService = messageService;
+        this.peerDirectory = peerDirectory;
+        this.offlineQueue = offlineQueue;
+        this.signalingMetrics = signalingMetrics;
     }
 
     /**
@@ -34,24 +64,16 @@ public class SignalingController {
      */
     @MessageMapping("/signal/offer")
     public void handleOffer(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
-        log.info("🔥 OFFER ENDPOINT CALLED!");
+        message.setFrom(senderPeerId(headerAccessor));
         log.info("📞 Received OFFER from {} to {}", message.getFrom(), message.getTo());
-        log.info("📋 Message details: type={}, payload={}", message.getType(), message.getPayload());
-        log.info("📋 Online peers: {}", peerRegistry.getAllPeerIds());
         
         message.setType(SignalingMessage.SignalType.OFFER);
         message.setTimestamp(System.currentTimeMillis());
         
-        // Get target peer's session ID
-        String targetSessionId = peerRegistry.getSessionId(message.getTo());
-        log.info("🎯 Looking for peer: {}, found session: {}", message.getTo(), targetSessionId);
-        
-        if (targetSessionId != null) {
-            // Send to specific peer's topic
-            String destination = "/topic/peer/" + message.getTo();
-            messagingTemplate.convertAndSend(destination, message);
-            log.info("📤 Sent OFFER to peer {} via topic {}", message.getTo(), destination);
-        } else {
+        // Deliver to the target peer's session
+        if (signalingRelay.sendToPeer(message)) {
+            log.debug("📤 Sent OFFER to peer {}", message.getTo());
+        } else if (!offlineQueue.enqueue(message)) {
             log.warn("⚠️ Target peer {} not found in online peers", message.getTo());
         }
     }
@@ -60,20 +82,16 @@ public class SignalingController {
      * Handle WebRTC Answer
      */
     @MessageMapping("/signal/answer")
-    public void handleAnswer(@Payload SignalingMessage message) {
+    public void handleAnswer(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        message.setFrom(senderPeerId(headerAccessor));
         log.info("✅ Received ANSWER from {} to {}", message.getFrom(), message.getTo());
         
         message.setType(SignalingMessage.SignalType.ANSWER);
         message.setTimestamp(System.currentTimeMillis());
         
-        // Get target peer's session ID
-        String targetSessionId = peerRegistry.getSessionId(message.getTo());
-        
-        if (targetSessionId != null) {
-            // Send to specific peer's topic
-            String destination = "/topic/peer/" + message.getTo();
-            messagingTemplate.convertAndSend(destination, message);
-            log.info("📤 Sent ANSWER to peer {} via topic {}", message.getTo(), destination);
+        // Deliver to the target peer's session
+        if (signalingRelay.sendToPeer(message)) {
+            log.debug("📤 Sent ANSWER to peer {}", message.getTo());
         } else {
             log.warn("⚠️ Target peer {} not found in online peers", message.getTo());
         }
@@ -83,23 +101,33 @@ public class SignalingController {
      * Handle ICE Candidate
      */
     @MessageMapping("/signal/ice-candidate")
-    public void handleIceCandidate(@Payload SignalingMessage message) {
+    public void handleIceCandidate(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        message.setFrom(senderPeerId(headerAccessor));
         log.debug("🧊 Received ICE candidate from {} to {}", message.getFrom(), message.getTo());
         
-        message.setType(SignalingMessage.SignalType.ICE_CANDIDATE);
-        message.setTimestamp(System.currentTimeMillis());
-        
-        // Get target peer's session ID
-        String targetSessionId = peerRegistry.getSessionId(message.getTo());
+        if (message.getPayload() == null) {
+            signalingMetrics.undeliverable(SignalingMessage.SignalType.ICE_CANDIDATE, UndeliverableReason.INVALID);
+            return;
+        }
         
-        if (targetSessionId != null) {
-            // Send to specific peer's topic
-            String destination = "/topic/peer/" + message.getTo();
-            messagingTemplate.convertAndSend(destination, message);
-            log.debug("📤 Sent ICE candidate to peer {} via topic {}", message.getTo(), destination);
-        } else {
-            log.warn("⚠️ Target peer {} not found for ICE candidate", message.getTo());
+        // Coalesce with other candidates for the same pair
+        iceCandidateCoalescer.add(message.getFrom(), message.getTo(), List.of(message.getPayload()));
+    }
+
+    /**
+     * Handle a batch of ICE Candidates
+     */
+    @MessageMapping("/signal/ice-candidates")
+    public void handleIceCandidates(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        message.setFrom(senderPeerId(headerAccessor));
+        if (!(message.getPayload() instanceof List<?> candidates)) {
+            log.warn("⚠️ Ignoring ICE candidate batch from {} without an array payload", message.getFrom());
+            signalingMetrics.undeliverable(SignalingMessage.SignalType.ICE_CANDIDATES, UndeliverableReason.INVALID);
+            return;
         }
+        log.debug("🧊 Received {} ICE candidates from {} to {}", candidates.size(), message.getFrom(), message.getTo());
+        
+        iceCandidateCoalescer.add(message.getFrom(), message.getTo(), candidates);
     }
 
     /**
@@ -108,34 +136,17 @@ public class SignalingController {
     @MessageMapping("/signal/peer-online")
     public void handlePeerOnline(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
         String sessionId = headerAccessor != null ? headerAccessor.getSessionId() : null;
-        String peerId = message.getFrom();
-        
-        log.info("👤 Peer {} came online (session: {})", peerId, sessionId);
-        
-        // Register peer in central registry
-        if (sessionId != null) {
-            peerRegistry.registerPeer(peerId, sessionId);
+        UserPrincipal principal = StompAuthenticationInterceptor.getPrincipal(headerAccessor);
+        if (principal == null) {
+            log.warn("⚠️ Ignoring peer-online from unauthenticated session {}", sessionId);
+            signalingMetrics.undeliverable(SignalingMessage.SignalType.PEER_ONLINE, UndeliverableReason.UNAUTHENTICATED);
+            return;
         }
         
-        // Update user status in database
-        try {
-            // Extract userId from peerId format: "peer-{userId}-{suffix}"
-            String[] parts = peerId.replace("peer-", "").split("-");
-            if (parts.length >= 1) {
-                Long userId = Long.parseLong(parts[0]);
-                userService.updateUserStatus(userId, UserStatus.ONLINE);
-            }
-        } catch (Exception e) {
-            log.warn("Could not update user status for peer {}: {}", peerId, e.getMessage());
-        }
+        log.info("👤 Peer {} came online (session: {})", principal.getPeerId(), sessionId);
         
-        // Broadcast to all peers
-        SignalingMessage notification = new SignalingMessage();
-        notification.setType(SignalingMessage.SignalType.PEER_ONLINE);
-        notification.setFrom(peerId);
-        notification.setTimestamp(System.currentTimeMillis());
-        
-        messagingTemplate.convertAndSend("/topic/peers", notification);
+        // Register peer, mark it online and notify friends and group members
+        presenceService.peerOnline(principal.getUserId(), principal.getPeerId(), sessionId);
     }
 
     /**
@@ -143,54 +154,35 @@ public class SignalingController {
      */
     @MessageMapping("/signal/peer-offline")
     public void handlePeerOffline(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
-        String peerId = message.getFrom();
         String sessionId = headerAccessor != null ? headerAccessor.getSessionId() : null;
-        
-        log.info("👋 Peer {} went offline (session: {})", peerId, sessionId);
-        
-        // Unregister peer from central registry
-        peerRegistry.unregisterPeer(peerId);
-        
-        // Update user status in database
-        try {
-            // Extract userId from peerId format: "peer-{userId}-{suffix}"
-            String[] parts = peerId.replace("peer-", "").split("-");
-            if (parts.length >= 1) {
-                Long userId = Long.parseLong(parts[0]);
-                userService.updateUserStatus(userId, UserStatus.OFFLINE);
-            }
-        } catch (Exception e) {
-            log.warn("Could not update user status for peer {}: {}", peerId, e.getMessage());
+        UserPrincipal principal = StompAuthenticationInterceptor.getPrincipal(headerAccessor);
+        if (principal == null) {
+            log.warn("⚠️ Ignoring peer-offline from unauthenticated session {}", sessionId);
+            signalingMetrics.undeliverable(SignalingMessage.SignalType.PEER_OFFLINE, UndeliverableReason.UNAUTHENTICATED);
+            return;
         }
         
-        // Broadcast to all peers
-        SignalingMessage notification = new SignalingMessage();
-        notification.setType(SignalingMessage.SignalType.PEER_OFFLINE);
-        notification.setFrom(peerId);
-        notification.setTimestamp(System.currentTimeMillis());
+        log.info("👋 Peer {} went offline (session: {})", principal.getPeerId(), sessionId);
         
-        messagingTemplate.convertAndSend("/topic/peers", notification);
+        // Unregister peer, mark it offline and notify friends and group members
+        presenceService.peerOffline(principal.getUserId(), principal.getPeerId());
     }
 
     /**
      * Handle call request
      */
     @MessageMapping("/signal/call-request")
-    public void handleCallRequest(@Payload SignalingMessage message) {
+    public void handleCallRequest(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        message.setFrom(senderPeerId(headerAccessor));
         log.info("📲 Call request from {} to {}", message.getFrom(), message.getTo());
         
         message.setType(SignalingMessage.SignalType.CALL_REQUEST);
         message.setTimestamp(System.currentTimeMillis());
         
-        // Get target peer's session ID
-        String targetSessionId = peerRegistry.getSessionId(message.getTo());
-        
-        if (targetSessionId != null) {
-            // Send to specific peer's topic
-            String destination = "/topic/peer/" + message.getTo();
-            messagingTemplate.convertAndSend(destination, message);
-            log.info("📤 Sent CALL_REQUEST to peer {} via topic {}", message.getTo(), destination);
-        } else {
+        // Deliver to the target peer's session
+        if (signalingRelay.sendToPeer(message)) {
+            log.debug("📤 Sent CALL_REQUEST to peer {}", message.getTo());
+        } else if (!offlineQueue.enqueue(message)) {
             log.warn("⚠️ Target peer {} not found for call request", message.getTo());
         }
     }
@@ -199,7 +191,8 @@ public class SignalingController {
      * Handle call accept
      */
     @MessageMapping("/signal/call-accept")
-    public void handleCallAccept(@Payload SignalingMessage message) {
+    public void handleCallAccept(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        message.setFrom(senderPeerId(headerAccessor));
         log.info("✅ Call accepted from {} to {}", message.getFrom(), message.getTo());
         
         message.setType(SignalingMessage.SignalType.CALL_ACCEPT);
@@ -208,41 +201,139 @@ public class SignalingController {
         // message.getFrom() = người accept (Bob)
         // message.getTo() = người nhận accept (Alice)
         // Send to the initiator (getTo)
-        String destination = "/topic/peer/" + message.getTo();
-        messagingTemplate.convertAndSend(destination, message);
-        log.info("📤 Sent CALL_ACCEPT from {} to {} via topic {}", message.getFrom(), message.getTo(), destination);
+        if (signalingRelay.sendToPeer(message)) {
+            log.debug("📤 Sent CALL_ACCEPT from {} to {}", message.getFrom(), message.getTo());
+        } else if (!offlineQueue.enqueue(message)) {
+            log.warn("⚠️ Target peer {} not found for call accept", message.getTo());
+        }
     }
 
     /**
      * Handle call reject
      */
     @MessageMapping("/signal/call-reject")
-    public void handleCallReject(@Payload SignalingMessage message) {
+    public void handleCallReject(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        message.setFrom(senderPeerId(headerAccessor));
         log.info("❌ Call rejected from {} to {}", message.getFrom(), message.getTo());
         
         message.setType(SignalingMessage.SignalType.CALL_REJECT);
         message.setTimestamp(System.currentTimeMillis());
         
-        messagingTemplate.convertAndSendToUser(
-            message.getTo(),
-            "/queue/signal",
-            message
-        );
+        // Deliver to the target peer's session
+        if (signalingRelay.sendToPeer(message)) {
+            log.debug("📤 Sent CALL_REJECT from {} to {}", message.getFrom(), message.getTo());
+        } else if (!offlineQueue.enqueue(message)) {
+            log.warn("⚠️ Target peer {} not found for call reject", message.getTo());
+        }
     }
 
     /**
      * Handle typing indicator
      */
     @MessageMapping("/signal/typing")
-    public void handleTyping(@Payload SignalingMessage message) {
+    public void handleTyping(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        message.setFrom(senderPeerId(headerAccessor));
         message.setType(SignalingMessage.SignalType.TYPING);
         message.setTimestamp(System.currentTimeMillis());
         
+        // Session users are named by peerId, so the user queue reaches every tab of the peer
         messagingTemplate.convertAndSendToUser(
             message.getTo(),
             "/queue/signal",
-            message
+            message,
+            SlowConsumerGuard.headersFor(message.getType())
         );
+        signalingMetrics.sent(SignalingMessage.SignalType.TYPING);
+    }
+
+    /**
+     * Handle a group text or file frame sent once for server-side fan-out
+     */
+    @MessageMapping("/signal/group-message")
+    public void handleGroupMessage(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        UserPrincipal principal = StompAuthenticationInterceptor.getPrincipal(headerAccessor);
+        if (principal == null) {
+            log.warn("⚠️ Ignoring group message from unauthenticated session {}", headerAccessor.getSessionId());
+            signalingMetrics.undeliverable(SignalingMessage.SignalType.GROUP_MESSAGE, UndeliverableReason.UNAUTHENTICATED);
+            return;
+        }
+        
+        if (!groupService.relayGroupMessage(principal.getUserId(), principal.getPeerId(), message.getPayload())) {
+            signalingMetrics.undeliverable(SignalingMessage.SignalType.GROUP_MESSAGE, UndeliverableReason.FORBIDDEN);
+        }
+    }
+
+    /**
+     * Handle a direct text message sent through the server: it is stored
+     * in the conversation log and delivered if the recipient is online
+     */
+    @MessageMapping("/signal/message")
+    public void handleMessage(@Payload SignalingMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        UserPrincipal principal = StompAuthenticationInterceptor.getPrincipal(headerAccessor);
+        Long userId = principal != null ? principal.getUserId() : null;
+        Long recipientId = peerDirectory.getUserId(message.getTo());
+        Object content = message.getPayload() instanceof Map<?, ?> payload ? payload.get("content") : null;
+        if (userId == null || recipientId == null || !(content instanceof String text)) {
+            log.warn("⚠️ Dropping message from user {} to peer {}", userId, message.getTo());
+            signalingMetrics.undeliverable(SignalingMessage.SignalType.MESSAGE,
+                    userId == null ? UndeliverableReason.UNAUTHENTICATED : UndeliverableReason.INVALID);
+            return;
+        }
+        
+        String senderPeerId = principal.getPeerId();
+        String recipientPeerId = message.getTo();
+        try {
+            messageService.append(MessageService.directKey(userId, recipientId), userId, text,
+                    stored -> deliverMessage(stored, senderPeerId, recipientPeerId));
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Rejected message from user {}: {}", userId, e.getMessage());
+            signalingMetrics.undeliverable(SignalingMessage.SignalType.MESSAGE, UndeliverableReason.INVALID);
+        }
     }
-}
 
+    /**
+     * Hand a stored direct message to its recipient, or to the offline queue,
+     * and echo it to the sender so their sessions learn its seq
+     */
+    private void deliverMessage(MessageDTO stored, String senderPeerId, String recipientPeerId) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", "text");
+        payload.put("content", stored.getContent());
+        payload.put("timestamp", stored.getTimestamp());
+        payload.put("seq", stored.getSeq());
+        payload.put("conversationKey", stored.getConversationKey());
+        
+        SignalingMessage delivery = new SignalingMessage(
+            SignalingMessage.SignalType.MESSAGE,
+            senderPeerId,
+            recipientPeerId,
+            payload,
+            stored.getTimestamp()
+        );
+        if (!signalingRelay.sendToPeer(delivery)) {
+            if (offlineQueue.enqueue(delivery)) {
+                log.info("💾 Stored message {} for offline peer {}", stored.getSeq(), recipientPeerId);
+            } else {
+                log.warn("⚠️ Offline copy of message {} for peer {} not queued; it stays in the history",
+                        stored.getSeq(), recipientPeerId);
+            }
+        }
+        
+        signalingRelay.sendToPeer(new SignalingMessage(
+            SignalingMessage.SignalType.MESSAGE,
+            senderPeerId,
+            senderPeerId,
+            payload,
+            stored.getTimestamp()
+        ));
+    }
+
+    /**
+     * The peerId of the session that sent a frame; relayed frames carry this
+     * rather than whatever "from" the client put in them
+     */
+    private static String senderPeerId(SimpMessageHeaderAccessor headerAccessor) {
+        UserPrincipal principal = StompAuthenticationInterceptor.getPrincipal(headerAccessor);
+        return principal != null ? principal.getPeerId() : null;
+    }
+}
@@ -2,8 +2,11 @@ package com.p2pchat.controller;
 
 import com.p2pchat.dto.UserDTO;
 import com.p2pchat.entity.User.UserStatus;
+import com.p2pchat.security.UserPrincipal;
 import com.p2pchat.service.UserService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import java.util.List;
 
@@ -31,7 +34,11 @@ public class UserController {
     @PutMapping("/{userId}/status")
     public ResponseEntity<?> updateStatus(
             @PathVariable Long userId, 
-            @RequestParam String status) {
+            @RequestParam String status,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        if (!userId.equals(principal.getUserId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Cannot change another user's status");
+        }
         try {
             UserStatus userStatus = UserStatus.valueOf(status.toUpperCase());
             userService.updateUserStatus(userId, userStatus);
@@ -9,6 +9,7 @@ public class GroupDTO {
     private Long creatorId;
     private Set<Long> memberIds;
     private Integer memberCount;
+    private DeliveryMode deliveryMode = DeliveryMode.MESH;
     
     public GroupDTO() {}
     
@@ -42,5 +43,13 @@ public class GroupDTO {
     
     public Integer getMemberCount() { return memberCount; }
     public void setMemberCount(Integer memberCount) { this.memberCount = memberCount; }
+    
+    public DeliveryMode getDeliveryMode() { return deliveryMode; }
+    public void setDeliveryMode(DeliveryMode deliveryMode) { this.deliveryMode = deliveryMode; }
+    
+    public enum DeliveryMode {
+        MESH,   // Members exchange messages over direct WebRTC data channels
+        RELAY   // Members send once to the server, which fans out to the group
+    }
 }
 
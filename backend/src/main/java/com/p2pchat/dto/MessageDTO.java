@@ -0,0 +1,35 @@
+package com.p2pchat.dto;
+
+public class MessageDTO {
+    private String conversationKey;
+    private Long seq;
+    private Long senderId;
+    private String content;
+    private Long timestamp;
+
+    public MessageDTO() {}
+
+    public MessageDTO(String conversationKey, Long seq, Long senderId, String content, Long timestamp) {
+        this.conversationKey = conversationKey;
+        this.seq = seq;
+        this.senderId = senderId;
+        this.content = content;
+        this.timestamp = timestamp;
+    }
+
+    // Getters and Setters
+    public String getConversationKey() { return conversationKey; }
+    public void setConversationKey(String conversationKey) { this.conversationKey = conversationKey; }
+
+    public Long getSeq() { return seq; }
+    public void setSeq(Long seq) { this.seq = seq; }
+
+    public Long getSenderId() { return senderId; }
+    public void setSenderId(Long senderId) { this.senderId = senderId; }
+
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+
+    public Long getTimestamp() { return timestamp; }
+    public void setTimestamp(Long timestamp) { this.timestamp = timestamp; }
+}
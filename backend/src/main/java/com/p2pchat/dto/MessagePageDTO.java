@@ -0,0 +1,27 @@
+package com.p2pchat.dto;
+
+import java.util.List;
+
+public class MessagePageDTO {
+    private List<MessageDTO> messages;
+    private Long nextCursor; // seq to pass as the next before/after cursor
+    private boolean hasMore;
+
+    public MessagePageDTO() {}
+
+    public MessagePageDTO(List<MessageDTO> messages, Long nextCursor, boolean hasMore) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    // Getters and Setters
+    public List<MessageDTO> getMessages() { return messages; }
+    public void setMessages(List<MessageDTO> messages) { this.messages = messages; }
+
+    public Long getNextCursor() { return nextCursor; }
+    public void setNextCursor(Long nextCursor) { this.nextCursor = nextCursor; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+}
@@ -39,6 +39,7 @@ public class SignalingMessage {
         OFFER,           // Send WebRTC offer
         ANSWER,          // Send WebRTC answer
         ICE_CANDIDATE,   // Send ICE candidate
+        ICE_CANDIDATES,  // Send a batch of ICE candidates (array payload)
         
         // Peer Management
         PEER_ONLINE,     // User came online
@@ -59,6 +60,10 @@ public class SignalingMessage {
         GROUP_MEMBER_JOINED,  // New member joined group
         GROUP_MEMBER_LEFT,    // Member left group
         GROUP_UPDATED,        // Group info updated
+        GROUP_MESSAGE,        // Group text or file frame relayed by the server
+        
+        // Requests
+        REQUEST_RECEIVED,     // New friend request or group invitation
         
         // Error
         ERROR
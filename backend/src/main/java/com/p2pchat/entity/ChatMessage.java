@@ -0,0 +1,62 @@
+package com.p2pchat.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Append-only log entry of a conversation. A conversation is either a pair
+ * of users or a group; seq increases by one per message within it, and the
+ * unique (conversation_key, seq) index serves both history and sync reads.
+ */
+@Entity
+@Table(name = "messages",
+       uniqueConstraints = @UniqueConstraint(name = "uk_messages_conversation_seq",
+                                             columnNames = {"conversation_key", "seq"}))
+public class ChatMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long messageId;
+
+    @Column(name = "conversation_key", nullable = false, length = 40)
+    private String conversationKey;
+
+    @Column(nullable = false)
+    private Long seq;
+
+    @Column(name = "sender_id", nullable = false)
+    private Long senderId;
+
+    @Column(nullable = false, length = 4000)
+    private String content;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public ChatMessage() {}
+
+    public ChatMessage(String conversationKey, Long seq, Long senderId, String content) {
+        this.conversationKey = conversationKey;
+        this.seq = seq;
+        this.senderId = senderId;
+        this.content = content;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public Long getMessageId() { return messageId; }
+    public void setMessageId(Long messageId) { this.messageId = messageId; }
+
+    public String getConversationKey() { return conversationKey; }
+    public void setConversationKey(String conversationKey) { this.conversationKey = conversationKey; }
+
+    public Long getSeq() { return seq; }
+    public void setSeq(Long seq) { this.seq = seq; }
+
+    public Long getSenderId() { return senderId; }
+    public void setSenderId(Long senderId) { this.senderId = senderId; }
+
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "friends", uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "friend_id"}))
+@Table(name = "friends",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "friend_id"}),
+       indexes = @Index(name = "idx_friends_friend_id", columnList = "friend_id"))
 public class Friend {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
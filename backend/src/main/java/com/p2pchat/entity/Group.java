@@ -6,7 +6,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "`groups`")
+@Table(name = "`groups`", indexes = @Index(name = "idx_groups_creator_id", columnList = "creatorId"))
 public class Group {
     
     @Id
@@ -22,7 +22,9 @@ public class Group {
     private Long creatorId;
     
     @ElementCollection
-    @CollectionTable(name = "`group_members`", joinColumns = @JoinColumn(name = "group_id"))
+    // The primary key covers lookups by group; this index covers lookups by member
+    @CollectionTable(name = "`group_members`", joinColumns = @JoinColumn(name = "group_id"),
+                     indexes = @Index(name = "idx_group_members_user_group", columnList = "user_id, group_id"))
     @Column(name = "user_id")
     private Set<Long> memberIds = new HashSet<>();
     
@@ -4,10 +4,19 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "requests")
+@Table(name = "requests", indexes = {
+    // Pending lists: to_user_id + status, optionally narrowed by request_type
+    @Index(name = "idx_requests_to_status_type", columnList = "to_user_id, status, request_type"),
+    // Duplicate checks: from_user_id + to_user_id + request_type
+    @Index(name = "idx_requests_from_to_type", columnList = "from_user_id, to_user_id, request_type")
+})
 public class Request {
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled ids let Hibernate batch inserts, which IDENTITY columns rule out
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "requests_seq")
+    @SequenceGenerator(name = "requests_seq", sequenceName = "requests_seq", allocationSize = Request.ID_ALLOCATION_SIZE)
     private Long requestId;
 
     @Column(name = "from_user_id", nullable = false)
@@ -1,22 +1,39 @@
 package com.p2pchat.event;
 
+import com.p2pchat.service.RequestService;
 import com.p2pchat.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 @Component
-public class ApplicationStartupListener {
+public class ApplicationStartupListener implements SmartInitializingSingleton {
 
     private static final Logger log = LoggerFactory.getLogger(ApplicationStartupListener.class);
     
     private final UserService userService;
+    private final RequestService requestService;
     
-    public ApplicationStartupListener(UserService userService) {
+    public ApplicationStartupListener(UserService userService, RequestService requestService) {
         this.userService = userService;
+        this.requestService = requestService;
+    }
+
+    /**
+     * Runs once every bean is built but before the web server starts, so no
+     * request can be inserted with a pooled id that is already taken
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            requestService.alignRequestIds();
+        } catch (Exception e) {
+            log.error("❌ Failed to align request id sequence on startup: {}", e.getMessage(), e);
+        }
     }
 
     @EventListener(ApplicationReadyEvent.class)
@@ -0,0 +1,23 @@
+package com.p2pchat.event;
+
+/**
+ * Published when a friendship between two users is created or removed
+ */
+public class FriendshipChangedEvent {
+
+    private final Long userId;
+    private final Long friendId;
+    private final boolean friends;
+
+    public FriendshipChangedEvent(Long userId, Long friendId, boolean friends) {
+        this.userId = userId;
+        this.friendId = friendId;
+        this.friends = friends;
+    }
+
+    public Long getUserId() { return userId; }
+
+    public Long getFriendId() { return friendId; }
+
+    public boolean isFriends() { return friends; }
+}
@@ -0,0 +1,32 @@
+package com.p2pchat.event;
+
+import java.util.Set;
+
+/**
+ * Published when a user joins a group by accepting an invitation
+ */
+public class GroupMemberJoinedEvent {
+
+    private final Long groupId;
+    private final String groupName;
+    private final Set<Long> memberIds;
+    private final Long newMemberId;
+
+    public GroupMemberJoinedEvent(Long groupId, String groupName, Set<Long> memberIds, Long newMemberId) {
+        this.groupId = groupId;
+        this.groupName = groupName;
+        this.memberIds = Set.copyOf(memberIds);
+        this.newMemberId = newMemberId;
+    }
+
+    public Long getGroupId() { return groupId; }
+
+    public String getGroupName() { return groupName; }
+
+    /**
+     * Members of the group, the new member included
+     */
+    public Set<Long> getMemberIds() { return memberIds; }
+
+    public Long getNewMemberId() { return newMemberId; }
+}
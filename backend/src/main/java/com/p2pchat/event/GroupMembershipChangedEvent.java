@@ -0,0 +1,31 @@
+package com.p2pchat.event;
+
+import java.util.Set;
+
+/**
+ * Published when a group's member set changes
+ */
+public class GroupMembershipChangedEvent {
+
+    private final Long groupId;
+    private final Set<Long> memberIds;
+    private final Long changedUserId;
+
+    public GroupMembershipChangedEvent(Long groupId, Set<Long> memberIds, Long changedUserId) {
+        this.groupId = groupId;
+        this.memberIds = Set.copyOf(memberIds);
+        this.changedUserId = changedUserId;
+    }
+
+    public Long getGroupId() { return groupId; }
+
+    /**
+     * Members of the group after the change
+     */
+    public Set<Long> getMemberIds() { return memberIds; }
+
+    /**
+     * The user who joined or left
+     */
+    public Long getChangedUserId() { return changedUserId; }
+}
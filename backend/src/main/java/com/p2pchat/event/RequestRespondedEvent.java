@@ -0,0 +1,25 @@
+package com.p2pchat.event;
+
+import com.p2pchat.entity.Request.RequestStatus;
+
+/**
+ * Published when the recipient of a request accepts or rejects it
+ */
+public class RequestRespondedEvent {
+
+    private final Long requestId;
+    private final Long toUserId;
+    private final RequestStatus status;
+
+    public RequestRespondedEvent(Long requestId, Long toUserId, RequestStatus status) {
+        this.requestId = requestId;
+        this.toUserId = toUserId;
+        this.status = status;
+    }
+
+    public Long getRequestId() { return requestId; }
+
+    public Long getToUserId() { return toUserId; }
+
+    public RequestStatus getStatus() { return status; }
+}
@@ -0,0 +1,34 @@
+package com.p2pchat.event;
+
+import com.p2pchat.entity.Request.RequestType;
+
+import java.util.List;
+
+/**
+ * Published when friend requests or group invitations are created
+ */
+public class RequestsCreatedEvent {
+
+    private final Long fromUserId;
+    private final RequestType requestType;
+    private final Long targetId;
+    private final List<Long> toUserIds;
+
+    public RequestsCreatedEvent(Long fromUserId, RequestType requestType, Long targetId, List<Long> toUserIds) {
+        this.fromUserId = fromUserId;
+        this.requestType = requestType;
+        this.targetId = targetId;
+        this.toUserIds = List.copyOf(toUserIds);
+    }
+
+    public Long getFromUserId() { return fromUserId; }
+
+    public RequestType getRequestType() { return requestType; }
+
+    /**
+     * The group of a group invitation, null for friend requests
+     */
+    public Long getTargetId() { return targetId; }
+
+    public List<Long> getToUserIds() { return toUserIds; }
+}
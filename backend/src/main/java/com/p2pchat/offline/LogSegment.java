@@ -0,0 +1,150 @@
+package com.p2pchat.offline;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One memory-mapped file of the offline log.
+ *
+ * Records are laid out back to back as [int length][byte kind][long expiresAt][body];
+ * a zero length marks the end of the written part, which the zero-filled
+ * tail of a fresh file provides for free.
+ *
+ * Appends come from one thread at a time; reads of records already written
+ * and the expiry may come from any thread.
+ */
+class LogSegment {
+
+    static final int RECORD_HEADER = Integer.BYTES + Byte.BYTES + Long.BYTES;
+
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private volatile long maxExpiresAt;
+    // Messages in this segment that the queue's index still points at
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private LogSegment(long id, Path path, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+    }
+
+    static LogSegment create(Path directory, long id, int size) throws IOException {
+        return map(id, directory.resolve(fileName(id)), size);
+    }
+
+    /**
+     * Map an existing segment and find the end of its records
+     */
+    static LogSegment open(Path file, long id) throws IOException {
+        LogSegment segment = map(id, file, (int) Files.size(file));
+        segment.forEach((offset, kind, expiresAt, body) -> { });
+        return segment;
+    }
+
+    private static LogSegment map(long id, Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new LogSegment(id, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    static String fileName(long id) {
+        return String.format("segment-%020d.log", id);
+    }
+
+    /**
+     * Append a record
+     *
+     * @return the record's offset, or -1 if the segment is full
+     */
+    int append(byte kind, long expiresAt, byte[] body) {
+        int length = RECORD_HEADER + body.length;
+        // Keep room for the zero length that ends the segment
+        if (writePosition + length + Integer.BYTES > buffer.capacity()) {
+            return -1;
+        }
+        int offset = writePosition;
+        buffer.put(offset + Integer.BYTES, kind);
+        buffer.putLong(offset + Integer.BYTES + Byte.BYTES, expiresAt);
+        buffer.put(offset + RECORD_HEADER, body);
+        // Length last, so a torn write reads as the end of the segment
+        buffer.putInt(offset, length);
+        writePosition += length;
+        maxExpiresAt = Math.max(maxExpiresAt, expiresAt);
+        return offset;
+    }
+
+    long expiresAt(int offset) {
+        return buffer.getLong(offset + Integer.BYTES + Byte.BYTES);
+    }
+
+    byte[] body(int offset) {
+        int length = buffer.getInt(offset);
+        byte[] body = new byte[length - RECORD_HEADER];
+        buffer.get(offset + RECORD_HEADER, body);
+        return body;
+    }
+
+    /**
+     * Visit records in write order
+     */
+    void forEach(RecordVisitor visitor) {
+        int offset = 0;
+        while (offset + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length < RECORD_HEADER || offset + length > buffer.capacity()) {
+                break;
+            }
+            byte kind = buffer.get(offset + Integer.BYTES);
+            long expiresAt = expiresAt(offset);
+            maxExpiresAt = Math.max(maxExpiresAt, expiresAt);
+            visitor.visit(offset, kind, expiresAt, body(offset));
+            offset += length;
+        }
+        writePosition = offset;
+    }
+
+    void flush() {
+        buffer.force();
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    long getId() {
+        return id;
+    }
+
+    void addPending() {
+        pending.incrementAndGet();
+    }
+
+    void removePending() {
+        pending.decrementAndGet();
+    }
+
+    int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Latest expiry of any record, after which the whole segment can go
+     */
+    long getMaxExpiresAt() {
+        return maxExpiresAt;
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(int offset, byte kind, long expiresAt, byte[] body);
+    }
+}
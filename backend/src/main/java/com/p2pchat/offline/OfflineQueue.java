@@ -0,0 +1,410 @@
+package com.p2pchat.offline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p2pchat.dto.SignalingMessage;
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import com.p2pchat.service.PeerDirectory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Store-and-forward queue for messages addressed to offline peers.
+ *
+ * Messages are appended to a log of fixed-size memory-mapped segment files,
+ * so an enqueue is a copy into the page cache rather than a database write.
+ * An in-memory index keeps the log position of every pending message per
+ * recipient; draining a recipient appends a marker instead of rewriting
+ * anything, and the index is rebuilt from the segments on startup. Each
+ * message carries its own expiry and a drain marker lives as long as the
+ * latest message it covers, so any segment can be deleted as soon as
+ * everything in it has expired: a message it let through on replay would
+ * have expired as well.
+ *
+ * Only messages for registered users are taken, each recipient may have a
+ * bounded number waiting, and the log as a whole is bounded: when it is
+ * full the oldest segment is dropped to make room.
+ *
+ * The lock covers only the index and the append itself; messages are
+ * written and read as JSON outside it, and expired segments are deleted
+ * without it. Index entries that point into a deleted segment are dropped
+ * when their recipient is next drained or fills up.
+ */
+@Service
+public class OfflineQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(OfflineQueue.class);
+
+    private static final byte RECORD_MESSAGE = 1;
+    private static final byte RECORD_DRAINED = 2;
+
+    // Call setup goes stale quickly; chat text is worth keeping for the full TTL
+    private static final Set<SignalType> SIGNAL_TYPES = Set.of(
+        SignalType.OFFER,
+        SignalType.CALL_REQUEST,
+        SignalType.CALL_ACCEPT,
+        SignalType.CALL_REJECT
+    );
+
+    private final ObjectMapper objectMapper;
+    private final PeerDirectory peerDirectory;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final long messageTtlMillis;
+    private final long signalTtlMillis;
+    private final int maxPerPeer;
+    private final long maxBytes;
+    private final Counter enqueued;
+    private final Counter delivered;
+    private final Counter expired;
+    private final Counter rejected;
+    private final Counter evicted;
+
+    // Guards pending and appends to the active segment
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Segments by id, oldest first; the active one takes appends and is only replaced under the lock
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private volatile LogSegment active;
+
+    // Log positions of pending messages: recipient peerId -> positions in write order
+    private final Map<String, List<Position>> pending = new HashMap<>();
+
+    public OfflineQueue(ObjectMapper objectMapper, PeerDirectory peerDirectory, MeterRegistry meterRegistry,
+                        @Value("${offline-queue.enabled:true}") boolean enabled,
+                        @Value("${offline-queue.directory:data/offline-queue}") String directory,
+                        @Value("${offline-queue.segment-size-bytes:16777216}") int segmentSize,
+                        @Value("${offline-queue.message-ttl-ms:604800000}") long messageTtlMillis,
+                        @Value("${offline-queue.signal-ttl-ms:60000}") long signalTtlMillis,
+                        @Value("${offline-queue.max-per-peer:1000}") int maxPerPeer,
+                        @Value("${offline-queue.max-bytes:268435456}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.peerDirectory = peerDirectory;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.messageTtlMillis = messageTtlMillis;
+        this.signalTtlMillis = signalTtlMillis;
+        this.maxPerPeer = maxPerPeer;
+        // Room for at least the active segment and one to roll into
+        this.maxBytes = Math.max(maxBytes, 2L * segmentSize);
+        this.enqueued = Counter.builder("offline.queue.enqueued")
+                .description("Messages stored for offline peers")
+                .register(meterRegistry);
+        this.delivered = Counter.builder("offline.queue.delivered")
+                .description("Stored messages handed back when their peer came online")
+                .register(meterRegistry);
+        this.expired = Counter.builder("offline.queue.expired")
+                .description("Stored messages that expired before their peer came online")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("offline.queue.rejected")
+                .description("Messages not stored because the recipient is unknown or has too many waiting")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("offline.queue.evicted")
+                .description("Stored messages dropped with the oldest segment to keep the log within its size")
+                .register(meterRegistry);
+        Gauge.builder("offline.queue.segments", segments, Map::size)
+                .description("Segment files of the offline queue")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().startsWith("segment-"))
+                    .sorted()
+                    .toList();
+        }
+        lock.lock();
+        try {
+            for (Path file : files) {
+                long id = Long.parseLong(file.getFileName().toString().replaceAll("\\D", ""));
+                LogSegment segment = LogSegment.open(file, id);
+                segments.put(id, segment);
+                segment.forEach((offset, kind, expiresAt, body) -> replay(segment, offset, kind, expiresAt, body));
+            }
+            active = segments.isEmpty() ? LogSegment.create(directory, 0, segmentSize) : segments.lastEntry().getValue();
+            segments.put(active.getId(), active);
+
+            int messages = pending.values().stream().mapToInt(List::size).sum();
+            log.info("📦 Offline queue opened: {} segments, {} pending messages for {} peers",
+                    segments.size(), messages, pending.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Whether messages of this type are kept for offline peers
+     */
+    public boolean accepts(SignalType type) {
+        return enabled && (type == SignalType.MESSAGE || SIGNAL_TYPES.contains(type));
+    }
+
+    /**
+     * Store a message for its offline recipient
+     *
+     * @return false if the message was not stored
+     */
+    public boolean enqueue(SignalingMessage message) {
+        String peerId = message.getTo();
+        if (!accepts(message.getType()) || peerId == null) {
+            return false;
+        }
+        // Anyone can address any peerId; only keep messages a user will come back for
+        if (peerDirectory.getUserId(peerId) == null) {
+            rejected.increment();
+            log.debug("Not queuing {} for unknown peer {}", message.getType(), peerId);
+            return false;
+        }
+
+        byte[] record;
+        try {
+            record = encode(peerId, objectMapper.writeValueAsBytes(message));
+        } catch (IOException e) {
+            log.error("❌ Could not serialize {} for offline peer {}: {}", message.getType(), peerId, e.getMessage());
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        long expiresAt = now + (message.getType() == SignalType.MESSAGE ? messageTtlMillis : signalTtlMillis);
+
+        int waiting;
+        Position position = null;
+        lock.lock();
+        try {
+            List<Position> positions = pending.get(peerId);
+            if (positions != null && positions.size() >= maxPerPeer) {
+                prune(positions, now);
+            }
+            waiting = positions != null ? positions.size() : 0;
+            if (waiting < maxPerPeer) {
+                position = append(RECORD_MESSAGE, expiresAt, record);
+                if (position != null) {
+                    pending.computeIfAbsent(peerId, peer -> new ArrayList<>()).add(position);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (waiting >= maxPerPeer) {
+            rejected.increment();
+            log.warn("⚠️ Offline queue for peer {} is full ({} messages)", peerId, waiting);
+            return false;
+        }
+        if (position == null) {
+            return false;
+        }
+        enqueued.increment();
+        log.info("💾 Queued {} for offline peer {}", message.getType(), peerId);
+        return true;
+    }
+
+    /**
+     * Take every unexpired message stored for a peer, oldest first
+     */
+    public List<SignalingMessage> drain(String peerId) {
+        long now = System.currentTimeMillis();
+        List<byte[]> bodies;
+        lock.lock();
+        try {
+            List<Position> positions = pending.remove(peerId);
+            if (positions == null) {
+                return List.of();
+            }
+
+            long coveredUntil = 0;
+            bodies = new ArrayList<>(positions.size());
+            for (Position position : positions) {
+                LogSegment segment = segments.get(position.segmentId());
+                if (segment == null) {
+                    // Deleted, and counted, with its segment
+                    continue;
+                }
+                segment.removePending();
+                long expiresAt = segment.expiresAt(position.offset());
+                if (expiresAt < now) {
+                    expired.increment();
+                    continue;
+                }
+                coveredUntil = Math.max(coveredUntil, expiresAt);
+                bodies.add(segment.body(position.offset()));
+            }
+
+            // Later replays must not hand these out again, for as long as any of them would still be live
+            if (coveredUntil > 0) {
+                append(RECORD_DRAINED, coveredUntil, encode(peerId, new byte[0]));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        List<SignalingMessage> messages = new ArrayList<>(bodies.size());
+        for (byte[] record : bodies) {
+            ByteBuffer body = ByteBuffer.wrap(record);
+            body.position(Short.BYTES + body.getShort());
+            try {
+                messages.add(objectMapper.readValue(body.array(), body.position(), body.remaining(),
+                        SignalingMessage.class));
+            } catch (IOException e) {
+                log.error("❌ Could not read queued message for peer {}: {}", peerId, e.getMessage());
+            }
+        }
+        delivered.increment(messages.size());
+        return messages;
+    }
+
+    /**
+     * Delete every segment but the active one once all records in it have expired
+     */
+    @Scheduled(fixedDelayString = "${offline-queue.cleanup-interval-ms:60000}")
+    public void deleteExpiredSegments() {
+        LogSegment current = active;
+        if (current == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Segments before the active one take no more appends, so their expiry is final
+        for (LogSegment segment : segments.headMap(current.getId()).values()) {
+            if (segment.getMaxExpiresAt() < now && segments.remove(segment.getId(), segment)) {
+                expired.increment(segment.getPending());
+                delete(segment);
+                log.info("🗑️ Deleted expired offline queue segment {}", segment.getId());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        segments.values().forEach(LogSegment::flush);
+    }
+
+    /**
+     * Append a record to the active segment, rolling to a new one when it is
+     * full; the caller holds the lock
+     */
+    private Position append(byte kind, long expiresAt, byte[] body) {
+        if (body.length + LogSegment.RECORD_HEADER + Integer.BYTES > segmentSize) {
+            log.warn("⚠️ Record of {} bytes does not fit an offline queue segment", body.length);
+            return null;
+        }
+
+        LogSegment segment = active;
+        int offset = segment.append(kind, expiresAt, body);
+        if (offset < 0) {
+            while ((long) (segments.size() + 1) * segmentSize > maxBytes) {
+                evictOldest();
+            }
+            try {
+                segment = LogSegment.create(directory, segment.getId() + 1, segmentSize);
+            } catch (IOException e) {
+                log.error("❌ Could not roll offline queue segment: {}", e.getMessage());
+                return null;
+            }
+            segments.put(segment.getId(), segment);
+            active = segment;
+            offset = segment.append(kind, expiresAt, body);
+        }
+        if (kind == RECORD_MESSAGE) {
+            segment.addPending();
+        }
+        return new Position(segment.getId(), offset);
+    }
+
+    /**
+     * Drop the oldest segment, and the pending messages in it, ahead of expiry
+     */
+    private void evictOldest() {
+        Map.Entry<Long, LogSegment> oldest = segments.pollFirstEntry();
+        LogSegment segment = oldest.getValue();
+        int dropped = segment.getPending();
+        evicted.increment(dropped);
+        log.warn("⚠️ Offline queue is full; dropped segment {} with {} pending messages", segment.getId(), dropped);
+        delete(segment);
+    }
+
+    /**
+     * Drop a recipient's positions that were deleted with their segment or
+     * have expired; the caller holds the lock
+     */
+    private void prune(List<Position> positions, long now) {
+        positions.removeIf(position -> {
+            LogSegment segment = segments.get(position.segmentId());
+            if (segment == null) {
+                return true;
+            }
+            if (segment.expiresAt(position.offset()) < now) {
+                segment.removePending();
+                expired.increment();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void delete(LogSegment segment) {
+        try {
+            segment.delete();
+        } catch (IOException e) {
+            log.warn("Could not delete offline queue segment {}: {}", segment.getId(), e.getMessage());
+        }
+    }
+
+    private void replay(LogSegment segment, int offset, byte kind, long expiresAt, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        byte[] recipient = new byte[buffer.getShort()];
+        buffer.get(recipient);
+        String peerId = new String(recipient, StandardCharsets.UTF_8);
+
+        if (kind == RECORD_MESSAGE && expiresAt >= System.currentTimeMillis()) {
+            pending.computeIfAbsent(peerId, peer -> new ArrayList<>()).add(new Position(segment.getId(), offset));
+            segment.addPending();
+        } else if (kind == RECORD_DRAINED) {
+            List<Position> drained = pending.remove(peerId);
+            if (drained != null) {
+                drained.forEach(position -> segments.get(position.segmentId()).removePending());
+            }
+        }
+    }
+
+    private static byte[] encode(String peerId, byte[] payload) {
+        byte[] recipient = peerId.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(Short.BYTES + recipient.length + payload.length)
+                .putShort((short) recipient.length)
+                .put(recipient)
+                .put(payload)
+                .array();
+    }
+
+    private record Position(long segmentId, int offset) {
+    }
+}
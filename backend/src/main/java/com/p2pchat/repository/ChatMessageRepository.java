@@ -0,0 +1,26 @@
+package com.p2pchat.repository;
+
+import com.p2pchat.entity.ChatMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import java.util.List;
+
+@Repository
+public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
+    
+    /**
+     * Page of history older than a cursor, newest first
+     */
+    List<ChatMessage> findByConversationKeyAndSeqLessThanOrderBySeqDesc(String conversationKey, Long seq, Pageable pageable);
+    
+    /**
+     * Messages newer than a cursor, oldest first
+     */
+    List<ChatMessage> findByConversationKeyAndSeqGreaterThanOrderBySeqAsc(String conversationKey, Long seq, Pageable pageable);
+    
+    @Query("SELECT MAX(m.seq) FROM ChatMessage m WHERE m.conversationKey = :conversationKey")
+    Long findMaxSeq(@Param("conversationKey") String conversationKey);
+}
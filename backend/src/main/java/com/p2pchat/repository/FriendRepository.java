@@ -2,6 +2,8 @@ package com.p2pchat.repository;
 
 import com.p2pchat.entity.Friend;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
@@ -11,5 +13,21 @@ public interface FriendRepository extends JpaRepository<Friend, Long> {
     List<Friend> findByFriendId(Long friendId);
     boolean existsByUserIdAndFriendId(Long userId, Long friendId);
     void deleteByUserIdAndFriendId(Long userId, Long friendId);
-}
 
+    /**
+     * All friendship rows as bare id pairs, for loading the friend graph
+     */
+    @Query("SELECT f.userId AS userId, f.friendId AS friendId FROM Friend f")
+    List<FriendPairView> findAllPairs();
+
+    /**
+     * A user's friend ids in ascending order
+     */
+    @Query("SELECT f.friendId FROM Friend f WHERE f.userId = :userId ORDER BY f.friendId")
+    List<Long> findFriendIdsByUserId(@Param("userId") Long userId);
+
+    interface FriendPairView {
+        Long getUserId();
+        Long getFriendId();
+    }
+}
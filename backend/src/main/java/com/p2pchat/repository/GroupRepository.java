@@ -10,9 +10,20 @@ import java.util.List;
 @Repository
 public interface GroupRepository extends JpaRepository<Group, Long> {
     
-    @Query("SELECT g FROM Group g JOIN g.memberIds m WHERE m = :userId")
+    /**
+     * Groups of a user with their member sets fetched in the same query,
+     * one Group per row
+     */
+    @Query("SELECT DISTINCT g FROM Group g LEFT JOIN FETCH g.memberIds " +
+           "WHERE g.groupId IN (SELECT mg.groupId FROM Group mg JOIN mg.memberIds m WHERE m = :userId)")
     List<Group> findGroupsByUserId(@Param("userId") Long userId);
     
     List<Group> findByCreatorId(Long creatorId);
+    
+    @Query("SELECT DISTINCT other FROM Group g JOIN g.memberIds m JOIN g.memberIds other WHERE m = :userId")
+    List<Long> findCoMemberIds(@Param("userId") Long userId);
+    
+    @Query("SELECT m FROM Group g JOIN g.memberIds m WHERE g.groupId = :groupId")
+    List<Long> findMemberIds(@Param("groupId") Long groupId);
 }
 
@@ -1,19 +1,48 @@
 package com.p2pchat.repository;
 
+import com.p2pchat.dto.RequestDTO;
 import com.p2pchat.entity.Request;
 import com.p2pchat.entity.Request.RequestStatus;
 import com.p2pchat.entity.Request.RequestType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RequestRepository extends JpaRepository<Request, Long> {
-    List<Request> findByToUserIdAndStatus(Long toUserId, RequestStatus status);
-    List<Request> findByToUserIdAndRequestTypeAndStatus(Long toUserId, RequestType type, RequestStatus status);
+    /**
+     * Requests addressed to a user as DTOs, with sender and group names
+     * joined in rather than loaded per row
+     */
+    @Query("SELECT new com.p2pchat.dto.RequestDTO(r.requestId, r.fromUserId, u.username, r.toUserId, " +
+           "r.requestType, r.targetId, g.groupName, r.status, r.createdAt, r.respondedAt) " +
+           "FROM Request r LEFT JOIN User u ON u.userId = r.fromUserId LEFT JOIN Group g ON g.groupId = r.targetId " +
+           "WHERE r.toUserId = :toUserId AND r.status = :status ORDER BY r.createdAt DESC")
+    List<RequestDTO> findViewsByToUserIdAndStatus(@Param("toUserId") Long toUserId,
+                                                  @Param("status") RequestStatus status);
+
+    @Query("SELECT new com.p2pchat.dto.RequestDTO(r.requestId, r.fromUserId, u.username, r.toUserId, " +
+           "r.requestType, r.targetId, g.groupName, r.status, r.createdAt, r.respondedAt) " +
+           "FROM Request r LEFT JOIN User u ON u.userId = r.fromUserId LEFT JOIN Group g ON g.groupId = r.targetId " +
+           "WHERE r.toUserId = :toUserId AND r.requestType = :type AND r.status = :status ORDER BY r.createdAt DESC")
+    List<RequestDTO> findViewsByToUserIdAndRequestTypeAndStatus(@Param("toUserId") Long toUserId,
+                                                                @Param("type") RequestType type,
+                                                                @Param("status") RequestStatus status);
     Optional<Request> findByFromUserIdAndToUserIdAndRequestType(Long fromUserId, Long toUserId, RequestType type);
     boolean existsByFromUserIdAndToUserIdAndRequestType(Long fromUserId, Long toUserId, RequestType type);
     List<Request> findByToUserId(Long toUserId);
+
+    /**
+     * Move the id sequence past ids already handed out, such as those of
+     * rows created while request ids were auto-increment values
+     */
+    @Modifying
+    @Query(value = "UPDATE requests_seq SET next_val = GREATEST(next_val, " +
+            "(SELECT COALESCE(MAX(request_id), 0) + :allocationSize FROM requests))", nativeQuery = true)
+    int alignIdSequence(@Param("allocationSize") int allocationSize);
 }
 
@@ -5,7 +5,9 @@ import com.p2pchat.entity.User.UserStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +20,12 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
     
+    /**
+     * Resolve the peerIds of many users in one query
+     */
+    @Query("SELECT u.userId AS userId, u.peerId AS peerId FROM User u WHERE u.userId IN :userIds")
+    List<PeerIdView> findPeerIdsByUserIds(@Param("userIds") Collection<Long> userIds);
+    
     /**
      * Set all users to OFFLINE status
      * Useful for server restart cleanup
@@ -25,5 +33,12 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Modifying
     @Query("UPDATE User u SET u.status = :status")
     void updateAllUsersStatus(UserStatus status);
+    
+    /**
+     * Projection of a user's peer identity
+     */
+    interface PeerIdView {
+        Long getUserId();
+        String getPeerId();
+    }
 }
-
@@ -1,16 +1,32 @@
 package com.p2pchat.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Issues and verifies JWTs.
+ *
+ * The signing key and parser are built once. Verified tokens are cached by
+ * their SHA-256 hash until they expire, so a token presented again (every
+ * REST call and STOMP CONNECT of a session) skips signature checking and
+ * JSON decoding.
+ */
 @Component
 public class JwtUtil {
 
@@ -20,13 +36,27 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration;
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    @Value("${jwt.claims-cache.max-entries:10000}")
+    private int claimsCacheMaxEntries;
+
+    private Key signingKey;
+    private JwtParser parser;
+
+    // Verified tokens: SHA-256 of token -> decoded claims
+    private final Map<String, Claims> verifiedClaims = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
-    public String generateToken(String username, Long userId) {
+    public String generateToken(String username, Long userId, String peerId) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", userId);
+        claims.put("peerId", peerId);
         return createToken(claims, username);
     }
 
@@ -36,7 +66,7 @@ public class JwtUtil {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
@@ -48,16 +78,64 @@ public class JwtUtil {
         return extractClaims(token).get("userId", Long.class);
     }
 
+    /**
+     * Verify a token and get the user it was issued to; the peerId is null
+     * for tokens issued without one
+     */
+    public UserPrincipal extractPrincipal(String token) {
+        Claims claims = extractClaims(token);
+        return new UserPrincipal(claims.get("userId", Long.class), claims.getSubject(),
+                claims.get("peerId", String.class));
+    }
+
     public Date extractExpiration(String token) {
         return extractClaims(token).getExpiration();
     }
 
     private Claims extractClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        String key = hash(token);
+        Claims claims = verifiedClaims.get(key);
+        if (claims != null && !isExpired(claims)) {
+            return claims;
+        }
+        if (claims != null) {
+            verifiedClaims.remove(key);
+        }
+
+        // Throws for bad signatures and expired tokens, which are never cached
+        claims = parser.parseClaimsJws(token).getBody();
+        if (claims.getExpiration() != null) {
+            if (verifiedClaims.size() >= claimsCacheMaxEntries) {
+                evict();
+            }
+            verifiedClaims.put(key, claims);
+        }
+        return claims;
+    }
+
+    /**
+     * Make room in the claims cache: expired tokens go first, and if that
+     * frees nothing the cache starts over
+     */
+    private void evict() {
+        verifiedClaims.values().removeIf(this::isExpired);
+        if (verifiedClaims.size() >= claimsCacheMaxEntries) {
+            verifiedClaims.clear();
+        }
+    }
+
+    private boolean isExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM ships SHA-256
+            throw new IllegalStateException(e);
+        }
     }
 
     public Boolean isTokenExpired(String token) {
@@ -65,8 +143,8 @@ public class JwtUtil {
     }
 
     public Boolean validateToken(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+        // One parse covers both checks
+        Claims claims = extractClaims(token);
+        return (claims.getSubject().equals(username) && !isExpired(claims));
     }
 }
-
@@ -0,0 +1,103 @@
+package com.p2pchat.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs password checks on a pool sized to the CPU count, off the servlet
+ * threads.
+ *
+ * A check is only admitted while the work already queued ahead of it would
+ * finish within the allowed wait, going by a running average of how long a
+ * hash takes. Past that, callers get a RejectedExecutionException at once
+ * rather than timing out in the queue.
+ */
+@Component
+public class PasswordHashingPool {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordHashingPool.class);
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final int poolSize;
+    private final long maxQueueWaitNanos;
+    private final Counter rejected;
+
+    // Running average of one hash
+    private final AtomicLong averageHashNanos = new AtomicLong();
+
+    public PasswordHashingPool(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry,
+                               @Value("${auth.hashing.pool-size:0}") int poolSize,
+                               @Value("${auth.hashing.queue-capacity:256}") int queueCapacity,
+                               @Value("${auth.hashing.max-queue-wait-ms:1000}") long maxQueueWaitMillis) {
+        this.passwordEncoder = passwordEncoder;
+        this.poolSize = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+        this.executor = new ThreadPoolExecutor(this.poolSize, this.poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hashing-"));
+        this.rejected = Counter.builder("auth.hashing.rejected")
+                .description("Password checks turned away because the hashing queue was too deep")
+                .register(meterRegistry);
+        Gauge.builder("auth.hashing.queue", executor, pool -> pool.getQueue().size())
+                .description("Password checks waiting for a hashing thread")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void calibrate() {
+        // The first hash warms the code path, the second seeds the average
+        String encoded = passwordEncoder.encode("calibration");
+        long started = System.nanoTime();
+        passwordEncoder.matches("calibration", encoded);
+        averageHashNanos.set(System.nanoTime() - started);
+        log.info("🔑 Password hashing pool: {} threads, ~{} ms per hash",
+                poolSize, TimeUnit.NANOSECONDS.toMillis(averageHashNanos.get()));
+    }
+
+    /**
+     * Check a password against its hash on the hashing pool
+     *
+     * @throws RejectedExecutionException if the queue is too deep to take the check
+     */
+    public CompletableFuture<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+        long expectedWait = (executor.getQueue().size() + 1) * averageHashNanos.get() / poolSize;
+        if (expectedWait > maxQueueWaitNanos) {
+            rejected.increment();
+            throw new RejectedExecutionException("Password hashing queue is full");
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long started = System.nanoTime();
+                boolean matches = passwordEncoder.matches(rawPassword, encodedPassword);
+                long elapsed = System.nanoTime() - started;
+                averageHashNanos.accumulateAndGet(elapsed, (average, sample) -> average + (sample - average) / 8);
+                return matches;
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
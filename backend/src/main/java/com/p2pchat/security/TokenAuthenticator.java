@@ -0,0 +1,57 @@
+package com.p2pchat.security;
+
+import com.p2pchat.service.PeerDirectory;
+import io.jsonwebtoken.JwtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns an Authorization header into a UserPrincipal, for both the REST
+ * filter and STOMP CONNECT.
+ */
+@Component
+public class TokenAuthenticator {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenAuthenticator.class);
+
+    public static final String AUTHORIZATION_HEADER = "Authorization";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtUtil jwtUtil;
+    private final PeerDirectory peerDirectory;
+
+    public TokenAuthenticator(JwtUtil jwtUtil, PeerDirectory peerDirectory) {
+        this.jwtUtil = jwtUtil;
+        this.peerDirectory = peerDirectory;
+    }
+
+    /**
+     * Verify a bearer token
+     *
+     * @return the principal, or null if the header is missing or the token is invalid
+     */
+    public UserPrincipal authenticate(String authorization) {
+        if (authorization == null || !authorization.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+
+        UserPrincipal principal;
+        try {
+            principal = jwtUtil.extractPrincipal(authorization.substring(BEARER_PREFIX.length()));
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected token: {}", e.getMessage());
+            return null;
+        }
+        if (principal.getUserId() == null) {
+            return null;
+        }
+        if (principal.getPeerId() == null) {
+            // Tokens issued before the peerId claim existed
+            principal = new UserPrincipal(principal.getUserId(), principal.getUsername(),
+                    peerDirectory.getPeerId(principal.getUserId()));
+        }
+        return principal;
+    }
+}
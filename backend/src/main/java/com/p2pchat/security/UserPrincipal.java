@@ -0,0 +1,36 @@
+package com.p2pchat.security;
+
+import java.security.Principal;
+
+/**
+ * The authenticated user of a REST request or STOMP session, taken from
+ * the JWT. Its name is the peerId, so user destinations address peers.
+ */
+public class UserPrincipal implements Principal {
+
+    private final Long userId;
+    private final String username;
+    private final String peerId;
+
+    public UserPrincipal(Long userId, String username, String peerId) {
+        this.userId = userId;
+        this.username = username;
+        this.peerId = peerId;
+    }
+
+    public Long getUserId() { return userId; }
+
+    public String getUsername() { return username; }
+
+    public String getPeerId() { return peerId; }
+
+    @Override
+    public String getName() {
+        return peerId;
+    }
+
+    @Override
+    public String toString() {
+        return "UserPrincipal[userId=" + userId + ", peerId=" + peerId + "]";
+    }
+}
@@ -0,0 +1,186 @@
+package com.p2pchat.service;
+
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.event.FriendshipChangedEvent;
+import com.p2pchat.repository.FriendRepository;
+import com.p2pchat.repository.FriendRepository.FriendPairView;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory adjacency index of the friend graph.
+ *
+ * Each user's friends are kept as a sorted long[] that is replaced, never
+ * mutated, on change, so readers need no locking. The whole graph is loaded
+ * once at startup and then kept current from friendship change events.
+ * Only this node's changes are seen, so in a cluster the index is not kept
+ * and every lookup reads the friends table.
+ */
+@Service
+public class FriendGraph {
+
+    private static final Logger log = LoggerFactory.getLogger(FriendGraph.class);
+
+    private static final long[] NONE = new long[0];
+
+    private final FriendRepository friendRepository;
+    private final boolean enabled;
+
+    // Adjacency: userId -> sorted friend userIds
+    private final Map<Long, long[]> adjacency = new ConcurrentHashMap<>();
+
+    public FriendGraph(FriendRepository friendRepository, ClusterNode clusterNode) {
+        this.friendRepository = friendRepository;
+        this.enabled = !clusterNode.isEnabled();
+    }
+
+    @PostConstruct
+    public void warm() {
+        if (!enabled) {
+            log.info("👥 Friend graph not cached: clustered, reading friendships from the database");
+            return;
+        }
+        Map<Long, List<Long>> loaded = new HashMap<>();
+        List<FriendPairView> pairs = friendRepository.findAllPairs();
+        for (FriendPairView pair : pairs) {
+            loaded.computeIfAbsent(pair.getUserId(), id -> new ArrayList<>()).add(pair.getFriendId());
+        }
+        loaded.forEach((userId, friendIds) -> {
+            long[] sorted = friendIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+            adjacency.put(userId, sorted);
+        });
+        log.info("👥 Friend graph loaded: {} users, {} friendships", adjacency.size(), pairs.size() / 2);
+    }
+
+    public boolean areFriends(long userId, long friendId) {
+        if (!enabled) {
+            return friendRepository.existsByUserIdAndFriendId(userId, friendId);
+        }
+        return Arrays.binarySearch(friendsOf(userId), friendId) >= 0;
+    }
+
+    /**
+     * Get a user's friends in ascending id order
+     */
+    public List<Long> getFriendIds(long userId) {
+        return toList(friendsOf(userId));
+    }
+
+    /**
+     * Get the friends two users have in common, in ascending id order
+     */
+    public List<Long> getMutualFriendIds(long userId, long otherUserId) {
+        long[] first = friendsOf(userId);
+        long[] second = friendsOf(otherUserId);
+        long[] mutual = new long[Math.min(first.length, second.length)];
+        int count = 0;
+        // Merge the two sorted arrays
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                mutual[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return toList(Arrays.copyOf(mutual, count));
+    }
+
+    /**
+     * Get friends of a user's friends who are not yet their friends, most
+     * mutual friends first
+     */
+    public List<Long> getFriendsOfFriends(long userId, int limit) {
+        long[] friends = friendsOf(userId);
+        Map<Long, Integer> mutualCounts = new HashMap<>();
+        for (long friendId : friends) {
+            for (long candidate : friendsOf(friendId)) {
+                if (candidate != userId && Arrays.binarySearch(friends, candidate) < 0) {
+                    mutualCounts.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        return mutualCounts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // Runs ahead of listeners that reload data derived from friendships
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        long userId = event.getUserId();
+        long friendId = event.getFriendId();
+        if (event.isFriends()) {
+            adjacency.compute(userId, (id, current) -> insert(current, friendId));
+            adjacency.compute(friendId, (id, current) -> insert(current, userId));
+        } else {
+            adjacency.computeIfPresent(userId, (id, current) -> remove(current, friendId));
+            adjacency.computeIfPresent(friendId, (id, current) -> remove(current, userId));
+        }
+    }
+
+    private long[] friendsOf(long userId) {
+        if (!enabled) {
+            return friendRepository.findFriendIdsByUserId(userId).stream().mapToLong(Long::longValue).toArray();
+        }
+        return adjacency.getOrDefault(userId, NONE);
+    }
+
+    private static long[] insert(long[] current, long value) {
+        if (current == null) {
+            return new long[] {value};
+        }
+        int at = Arrays.binarySearch(current, value);
+        if (at >= 0) {
+            return current;
+        }
+        int insertAt = -at - 1;
+        long[] updated = new long[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+        return updated;
+    }
+
+    private static long[] remove(long[] current, long value) {
+        int at = Arrays.binarySearch(current, value);
+        if (at < 0) {
+            return current;
+        }
+        if (current.length == 1) {
+            // Drops the entry for a user left without friends
+            return null;
+        }
+        long[] updated = new long[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, at);
+        System.arraycopy(current, at + 1, updated, at, current.length - at - 1);
+        return updated;
+    }
+
+    private static List<Long> toList(long[] ids) {
+        return Arrays.stream(ids).boxed().toList();
+    }
+}
@@ -1,38 +1,53 @@
 package com.p2pchat.service;
 
 import com.p2pchat.entity.Friend;
+import com.p2pchat.event.FriendshipChangedEvent;
 import com.p2pchat.repository.FriendRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class FriendService {
     private final FriendRepository friendRepository;
+    private final FriendGraph friendGraph;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public FriendService(FriendRepository friendRepository) {
+    public FriendService(FriendRepository friendRepository, FriendGraph friendGraph,
+                         ApplicationEventPublisher eventPublisher) {
         this.friendRepository = friendRepository;
+        this.friendGraph = friendGraph;
+        this.eventPublisher = eventPublisher;
     }
 
     public List<Long> getFriends(Long userId) {
-        List<Friend> friends = friendRepository.findByUserId(userId);
-        return friends.stream()
-                .map(Friend::getFriendId)
-                .collect(Collectors.toList());
+        return friendGraph.getFriendIds(userId);
+    }
+
+    public List<Long> getMutualFriends(Long userId, Long otherUserId) {
+        return friendGraph.getMutualFriendIds(userId, otherUserId);
+    }
+
+    /**
+     * Suggest friends of friends, most mutual friends first
+     */
+    public List<Long> getFriendSuggestions(Long userId, int limit) {
+        return friendGraph.getFriendsOfFriends(userId, limit);
     }
 
     @Transactional
     public boolean addFriend(Long userId, Long friendId) {
         // Check if already friends
-        if (friendRepository.existsByUserIdAndFriendId(userId, friendId)) {
+        if (friendGraph.areFriends(userId, friendId)) {
             return false;
         }
 
         // Create bidirectional friendship
         friendRepository.save(new Friend(userId, friendId));
         friendRepository.save(new Friend(friendId, userId));
+        eventPublisher.publishEvent(new FriendshipChangedEvent(userId, friendId, true));
         return true;
     }
 
@@ -40,6 +55,7 @@ public class FriendService {
     public boolean removeFriend(Long userId, Long friendId) {
         friendRepository.deleteByUserIdAndFriendId(userId, friendId);
         friendRepository.deleteByUserIdAndFriendId(friendId, userId);
+        eventPublisher.publishEvent(new FriendshipChangedEvent(userId, friendId, false));
         return true;
     }
 }
@@ -0,0 +1,76 @@
+package com.p2pchat.service;
+
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.dto.SignalingMessage;
+import com.p2pchat.event.GroupMembershipChangedEvent;
+import com.p2pchat.websocket.GroupTopicInterceptor;
+import com.p2pchat.websocket.GroupTopicInterceptor.GroupSubscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+
+/**
+ * Publishes group-wide events once to the group's topic and lets the broker
+ * fan them out to the subscribed members.
+ *
+ * The broker only reaches sessions on this node, so in cluster mode events
+ * are still addressed to each member's peer and forwarded as needed.
+ */
+@Service
+public class GroupBroadcaster {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupBroadcaster.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final GroupTopicInterceptor groupTopicInterceptor;
+    private final SignalingRelay signalingRelay;
+    private final PeerDirectory peerDirectory;
+    private final ClusterNode clusterNode;
+
+    public GroupBroadcaster(SimpMessagingTemplate messagingTemplate, GroupTopicInterceptor groupTopicInterceptor,
+                            SignalingRelay signalingRelay, PeerDirectory peerDirectory, ClusterNode clusterNode) {
+        this.messagingTemplate = messagingTemplate;
+        this.groupTopicInterceptor = groupTopicInterceptor;
+        this.signalingRelay = signalingRelay;
+        this.peerDirectory = peerDirectory;
+        this.clusterNode = clusterNode;
+    }
+
+    /**
+     * Send an event to every member of a group
+     */
+    public void broadcast(Long groupId, Collection<Long> memberIds, SignalingMessage.SignalType type,
+                          String from, Object payload) {
+        if (clusterNode.isEnabled()) {
+            signalingRelay.sendToPeers(type, from, peerDirectory.resolvePeerIds(memberIds).values(), payload);
+            return;
+        }
+
+        SignalingMessage message = new SignalingMessage(type, from, null, payload, System.currentTimeMillis());
+        messagingTemplate.convertAndSend(GroupTopicInterceptor.GROUP_DESTINATION_PREFIX + groupId, message);
+    }
+
+    /**
+     * Cancel the group topic subscriptions of users who left the group
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGroupMembershipChanged(GroupMembershipChangedEvent event) {
+        for (GroupSubscription subscription : groupTopicInterceptor.revokeNonMembers(event.getGroupId(), event.getMemberIds())) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+            accessor.setSessionId(subscription.sessionId());
+            accessor.setSubscriptionId(subscription.subscriptionId());
+            accessor.setLeaveMutable(true);
+            messagingTemplate.getMessageChannel().send(
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+            log.info("🚫 Revoked group {} topic for user {} (session: {})",
+                     subscription.groupId(), subscription.userId(), subscription.sessionId());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.p2pchat.service;
+
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.event.GroupMembershipChangedEvent;
+import com.p2pchat.repository.GroupRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of group memberships, kept current from membership change events.
+ * Only this node's changes are seen, so in a cluster every lookup reads
+ * the membership table.
+ */
+@Service
+public class GroupMembershipCache {
+
+    private final GroupRepository groupRepository;
+    private final boolean enabled;
+
+    // Cached members: groupId -> userIds
+    private final Map<Long, Set<Long>> members = new ConcurrentHashMap<>();
+    // Bumped on every change, so members loaded across one are not cached
+    private final AtomicLong membersVersion = new AtomicLong();
+
+    public GroupMembershipCache(GroupRepository groupRepository, ClusterNode clusterNode) {
+        this.groupRepository = groupRepository;
+        this.enabled = !clusterNode.isEnabled();
+    }
+
+    public boolean isMember(Long groupId, Long userId) {
+        return getMemberIds(groupId).contains(userId);
+    }
+
+    /**
+     * Get the members of a group, or an empty set if it does not exist
+     */
+    public Set<Long> getMemberIds(Long groupId) {
+        Set<Long> cached = members.get(groupId);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Queried outside the map so a slow load does not hold up other groups' lookups
+        long version = membersVersion.get();
+        List<Long> loaded = groupRepository.findMemberIds(groupId);
+        if (loaded.isEmpty()) {
+            // Unknown groups are not cached so a group created later is picked up
+            return Set.of();
+        }
+        Set<Long> memberIds = Set.copyOf(loaded);
+        if (enabled && membersVersion.get() == version) {
+            Set<Long> raced = members.putIfAbsent(groupId, memberIds);
+            return raced != null ? raced : memberIds;
+        }
+        return memberIds;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGroupMembershipChanged(GroupMembershipChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        membersVersion.incrementAndGet();
+        members.put(event.getGroupId(), event.getMemberIds());
+    }
+}
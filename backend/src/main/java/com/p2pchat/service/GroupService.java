@@ -1,31 +1,64 @@
 package com.p2pchat.service;
 
+import com.p2pchat.cluster.ClusterNode;
 import com.p2pchat.dto.GroupDTO;
 import com.p2pchat.dto.SignalingMessage;
 import com.p2pchat.entity.Group;
 import com.p2pchat.entity.User;
+import com.p2pchat.event.GroupMembershipChangedEvent;
 import com.p2pchat.repository.GroupRepository;
 import com.p2pchat.repository.UserRepository;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class GroupService {
 
+    private static final Logger log = LoggerFactory.getLogger(GroupService.class);
+
     private final GroupRepository groupRepository;
     private final UserRepository userRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final GroupBroadcaster groupBroadcaster;
+    private final SignalingRelay signalingRelay;
+    private final GroupMembershipCache membershipCache;
+    private final MessageService messageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int relayThreshold;
+    private final boolean cacheUserGroups;
+    
+    // Cached group listings: userId -> groups of the user
+    private final Map<Long, List<GroupDTO>> userGroups = new ConcurrentHashMap<>();
+    // Bumped on every invalidation, so a listing loaded across one is not cached
+    private final AtomicLong userGroupsVersion = new AtomicLong();
     
     public GroupService(GroupRepository groupRepository, UserRepository userRepository, 
-                       SimpMessagingTemplate messagingTemplate) {
+                       GroupBroadcaster groupBroadcaster, SignalingRelay signalingRelay,
+                       GroupMembershipCache membershipCache,
+                       MessageService messageService,
+                       ApplicationEventPublisher eventPublisher,
+                       ClusterNode clusterNode,
+                       @Value("${group.relay-threshold:8}") int relayThreshold) {
         this.groupRepository = groupRepository;
         this.userRepository = userRepository;
-        this.messagingTemplate = messagingTemplate;
+        this.groupBroadcaster = groupBroadcaster;
+        this.signalingRelay = signalingRelay;
+        this.membershipCache = membershipCache;
+        this.messageService = messageService;
+        this.eventPublisher = eventPublisher;
+        this.relayThreshold = relayThreshold;
+        // Only this node's membership changes are seen, so listings are not cached in a cluster
+        this.cacheUserGroups = !clusterNode.isEnabled();
     }
 
     public GroupDTO createGroup(String groupName, Long creatorId, Set<Long> memberIds) {
@@ -35,14 +68,39 @@ public class GroupService {
         // Other members will be added when they accept the invitation
         
         Group savedGroup = groupRepository.save(group);
+        eventPublisher.publishEvent(
+            new GroupMembershipChangedEvent(savedGroup.getGroupId(), savedGroup.getMemberIds(), creatorId));
         return convertToDTO(savedGroup);
     }
 
+    /**
+     * Get the groups of a user; loaded with their members in one query and
+     * cached until a membership of the user changes
+     */
     public List<GroupDTO> getUserGroups(Long userId) {
-        return groupRepository.findGroupsByUserId(userId)
+        List<GroupDTO> cached = userGroups.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Queried outside the map so a slow load does not hold up other users' lookups
+        long version = userGroupsVersion.get();
+        List<GroupDTO> groups = groupRepository.findGroupsByUserId(userId)
                 .stream()
                 .map(this::convertToDTO)
-                .collect(Collectors.toList());
+                .toList();
+        if (cacheUserGroups && userGroupsVersion.get() == version) {
+            List<GroupDTO> raced = userGroups.putIfAbsent(userId, groups);
+            return raced != null ? raced : groups;
+        }
+        return groups;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGroupMembershipChanged(GroupMembershipChangedEvent event) {
+        userGroupsVersion.incrementAndGet();
+        event.getMemberIds().forEach(userGroups::remove);
+        userGroups.remove(event.getChangedUserId());
     }
 
     public GroupDTO getGroup(Long groupId) {
@@ -51,12 +109,18 @@ public class GroupService {
                 .orElseThrow(() -> new RuntimeException("Group not found"));
     }
 
+    public boolean isMember(Long groupId, Long userId) {
+        return membershipCache.isMember(groupId, userId);
+    }
+
     public GroupDTO addMember(Long groupId, Long userId) {
         Group group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Group not found"));
         
         group.addMember(userId);
         Group savedGroup = groupRepository.save(group);
+        eventPublisher.publishEvent(
+            new GroupMembershipChangedEvent(savedGroup.getGroupId(), savedGroup.getMemberIds(), userId));
         return convertToDTO(savedGroup);
     }
 
@@ -69,6 +133,8 @@ public class GroupService {
         
         group.removeMember(userId);
         Group savedGroup = groupRepository.save(group);
+        eventPublisher.publishEvent(
+            new GroupMembershipChangedEvent(savedGroup.getGroupId(), savedGroup.getMemberIds(), userId));
         
         // Broadcast to remaining members that someone left
         if (leavingMember != null && leavingMember.getPeerId() != null) {
@@ -88,35 +154,93 @@ public class GroupService {
         payload.put("leftMemberUsername", leavingMember.getUsername());
         payload.put("totalMembers", group.getMemberIds().size());
         
-        // Send to remaining members AND the leaving member
-        Set<Long> allMemberIds = new java.util.HashSet<>(group.getMemberIds());
-        allMemberIds.add(leavingMember.getUserId()); // Include leaving member to update their UI
+        // Publish once to the remaining members through the group topic
+        groupBroadcaster.broadcast(
+            group.getGroupId(),
+            group.getMemberIds(),
+            SignalingMessage.SignalType.GROUP_MEMBER_LEFT,
+            leavingMember.getPeerId(),
+            payload
+        );
         
-        for (Long memberId : allMemberIds) {
-            User member = userRepository.findById(memberId).orElse(null);
-            if (member != null && member.getPeerId() != null) {
-                SignalingMessage message = new SignalingMessage(
-                    SignalingMessage.SignalType.GROUP_MEMBER_LEFT,
-                    leavingMember.getPeerId(),
-                    member.getPeerId(),
-                    payload,
-                    System.currentTimeMillis()
-                );
-                
-                // Send to peer's personal topic
-                messagingTemplate.convertAndSend("/topic/peer/" + member.getPeerId(), message);
+        // The leaving member no longer receives the group topic; tell them directly to update their UI
+        signalingRelay.sendToPeer(new SignalingMessage(
+            SignalingMessage.SignalType.GROUP_MEMBER_LEFT,
+            leavingMember.getPeerId(),
+            leavingMember.getPeerId(),
+            payload,
+            System.currentTimeMillis()
+        ));
+    }
+
+    /**
+     * Relay a group text or file frame from a member to the rest of the group
+     *
+     * @return false if the sender is not a member of the group named in the payload
+     */
+    public boolean relayGroupMessage(Long senderId, String senderPeerId, Object payload) {
+        if (!(payload instanceof Map<?, ?> frame)) {
+            return false;
+        }
+        Long groupId = frame.get("groupId") instanceof Number id ? id.longValue() : null;
+        if (groupId == null || !membershipCache.isMember(groupId, senderId)) {
+            log.warn("⚠️ User {} cannot relay to group {}", senderId, groupId);
+            return false;
+        }
+
+        // Text frames are kept in the group's message log and broadcast in seq order
+        if ("text".equals(frame.get("type")) && frame.get("content") instanceof String content) {
+            try {
+                messageService.append(MessageService.groupKey(groupId), senderId, content, stored -> {
+                    // A copy, so the caller's payload is never changed under it
+                    Map<String, Object> relayed = new HashMap<>();
+                    frame.forEach((key, value) -> relayed.put(String.valueOf(key), value));
+                    relayed.put("seq", stored.getSeq());
+                    relayed.put("conversationKey", stored.getConversationKey());
+                    broadcastGroupFrame(groupId, senderPeerId, relayed);
+                });
+            } catch (IllegalArgumentException e) {
+                log.warn("⚠️ Rejected group message from user {}: {}", senderId, e.getMessage());
+                return false;
             }
+            return true;
         }
+
+        broadcastGroupFrame(groupId, senderPeerId, payload);
+        return true;
+    }
+
+    private void broadcastGroupFrame(Long groupId, String senderPeerId, Object payload) {
+        // The sender is identified by their own peerId, not the one claimed in the frame
+        groupBroadcaster.broadcast(
+            groupId,
+            membershipCache.getMemberIds(groupId),
+            SignalingMessage.SignalType.GROUP_MESSAGE,
+            senderPeerId,
+            payload
+        );
+    }
+
+    /**
+     * Small groups keep the WebRTC mesh; past the threshold members would
+     * hold too many data channels, so messages go through the server
+     */
+    public GroupDTO.DeliveryMode getDeliveryMode(Group group) {
+        return group.getMemberIds().size() > relayThreshold
+                ? GroupDTO.DeliveryMode.RELAY
+                : GroupDTO.DeliveryMode.MESH;
     }
 
     private GroupDTO convertToDTO(Group group) {
-        return new GroupDTO(
+        GroupDTO dto = new GroupDTO(
             group.getGroupId(),
             group.getGroupName(),
             group.getGroupAvatar(),
             group.getCreatorId(),
             group.getMemberIds()
         );
+        dto.setDeliveryMode(getDeliveryMode(group));
+        return dto;
     }
 }
 
@@ -0,0 +1,156 @@
+package com.p2pchat.service;
+
+import com.p2pchat.dto.SignalingMessage;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces trickled ICE candidates per from -> to pair.
+ *
+ * The first candidate of a pair opens a batch window; every candidate that
+ * arrives before the window closes rides along, and the whole batch is
+ * relayed as a single ICE_CANDIDATES message with an array payload. A batch
+ * that reaches the candidate or size cap is relayed at once instead, so a
+ * burst does not build one oversized frame.
+ *
+ * The scheduler thread only runs the window timers; batches whose window
+ * closes are serialized and sent on a small delivery pool, so one slow
+ * send does not hold up the other pairs' batches.
+ */
+@Service
+public class IceCandidateCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(IceCandidateCoalescer.class);
+
+    private final SignalingRelay signalingRelay;
+    private final long windowMillis;
+    private final int maxCandidates;
+    private final int maxBytes;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService deliveryPool;
+
+    // Open batches: "from|to" -> pending batch
+    private final Map<String, PendingBatch> pending = new ConcurrentHashMap<>();
+
+    public IceCandidateCoalescer(SignalingRelay signalingRelay,
+                                 @Value("${signaling.ice.coalesce-window-ms:20}") long windowMillis,
+                                 @Value("${signaling.ice.coalesce-max-candidates:32}") int maxCandidates,
+                                 @Value("${signaling.ice.coalesce-max-bytes:16384}") int maxBytes,
+                                 @Value("${signaling.ice.delivery-pool-size:2}") int deliveryPoolSize) {
+        this.signalingRelay = signalingRelay;
+        this.windowMillis = windowMillis;
+        this.maxCandidates = maxCandidates;
+        this.maxBytes = maxBytes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ice-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CustomizableThreadFactory deliveryThreads = new CustomizableThreadFactory("ice-delivery-");
+        deliveryThreads.setDaemon(true);
+        this.deliveryPool = Executors.newFixedThreadPool(deliveryPoolSize, deliveryThreads);
+    }
+
+    /**
+     * Queue candidates for delivery from one peer to another
+     */
+    public void add(String from, String to, List<?> candidates) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        if (windowMillis <= 0) {
+            deliver(new PendingBatch(from, to), candidates);
+            return;
+        }
+
+        String key = from + '|' + to;
+        PendingBatch[] full = new PendingBatch[1];
+        pending.compute(key, (k, batch) -> {
+            if (batch == null) {
+                PendingBatch opened = new PendingBatch(from, to);
+                scheduler.schedule(() -> deliveryPool.execute(() -> flush(k, opened)),
+                        windowMillis, TimeUnit.MILLISECONDS);
+                batch = opened;
+            }
+            for (Object candidate : candidates) {
+                batch.candidates.add(candidate);
+                batch.bytes += estimateBytes(candidate);
+            }
+            if (batch.candidates.size() >= maxCandidates || batch.bytes >= maxBytes) {
+                // Relayed below, outside the map; the next candidate opens a new batch
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (full[0] != null) {
+            deliver(full[0], full[0].candidates);
+        }
+    }
+
+    private void flush(String key, PendingBatch batch) {
+        // A batch already relayed for being full may have been replaced by a newer one
+        if (pending.remove(key, batch)) {
+            deliver(batch, batch.candidates);
+        }
+    }
+
+    // Rough JSON size of a candidate: its string fields plus a little for keys and punctuation
+    private static int estimateBytes(Object candidate) {
+        if (candidate instanceof Map<?, ?> fields) {
+            int bytes = 2;
+            for (Map.Entry<?, ?> field : fields.entrySet()) {
+                bytes += 16 + (field.getValue() instanceof CharSequence text ? text.length() : 8);
+            }
+            return bytes;
+        }
+        return candidate instanceof CharSequence text ? text.length() + 2 : 16;
+    }
+
+    private void deliver(PendingBatch batch, List<?> candidates) {
+        SignalingMessage message = new SignalingMessage(
+            SignalingMessage.SignalType.ICE_CANDIDATES,
+            batch.from,
+            batch.to,
+            candidates,
+            System.currentTimeMillis()
+        );
+
+        if (signalingRelay.sendToPeer(message)) {
+            log.debug("📤 Sent {} ICE candidates to peer {}", candidates.size(), batch.to);
+        } else {
+            log.warn("⚠️ Target peer {} not found for {} ICE candidates", batch.to, candidates.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        deliveryPool.shutdown();
+    }
+
+    private static final class PendingBatch {
+        private final String from;
+        private final String to;
+        private final List<Object> candidates = new ArrayList<>();
+        private int bytes;
+
+        private PendingBatch(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.p2pchat.service;
+
+import com.p2pchat.dto.MessageDTO;
+import com.p2pchat.dto.MessagePageDTO;
+import com.p2pchat.entity.ChatMessage;
+import com.p2pchat.repository.ChatMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Append-only message log per conversation.
+ *
+ * Conversation keys are "d:{lowerUserId}:{higherUserId}" for a pair of users
+ * and "g:{groupId}" for a group. Sequence numbers are handed out from an
+ * in-memory counter seeded from the highest stored seq; the unique index on
+ * (conversation_key, seq) catches a counter that fell behind, which is then
+ * reseeded and the append retried.
+ *
+ * Assigning the seq, storing the message and handing it to delivery happen
+ * under one lock per conversation, so recipients get a conversation's
+ * messages in seq order. Counters of conversations idle for a while are
+ * dropped and seeded again on their next message.
+ */
+@Service
+public class MessageService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageService.class);
+
+    public static final int MAX_CONTENT_LENGTH = 4000;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_APPEND_ATTEMPTS = 3;
+
+    private final ChatMessageRepository messageRepository;
+    private final GroupMembershipCache membershipCache;
+    private final long sequenceIdleMillis;
+    private final int maxSyncConversations;
+
+    // Sequence state per conversation: conversationKey -> last stored seq and the append lock
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>();
+
+    public MessageService(ChatMessageRepository messageRepository, GroupMembershipCache membershipCache,
+                          @Value("${messages.sequence-idle-ms:600000}") long sequenceIdleMillis,
+                          @Value("${messages.sync-max-conversations:200}") int maxSyncConversations) {
+        this.messageRepository = messageRepository;
+        this.membershipCache = membershipCache;
+        this.sequenceIdleMillis = sequenceIdleMillis;
+        this.maxSyncConversations = maxSyncConversations;
+    }
+
+    public static String directKey(long userId, long otherUserId) {
+        return "d:" + Math.min(userId, otherUserId) + ":" + Math.max(userId, otherUserId);
+    }
+
+    public static String groupKey(long groupId) {
+        return "g:" + groupId;
+    }
+
+    /**
+     * Append a message to a conversation and deliver it. The message is
+     * committed before it is delivered, and the next message of the same
+     * conversation waits until delivery has been handed off.
+     */
+    public MessageDTO append(String conversationKey, Long senderId, String content, Consumer<MessageDTO> delivery) {
+        if (content == null || content.isBlank() || content.length() > MAX_CONTENT_LENGTH) {
+            throw new IllegalArgumentException("Message content must be 1-" + MAX_CONTENT_LENGTH + " characters");
+        }
+
+        Sequence sequence = lockSequence(conversationKey);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                if (sequence.lastSeq < 0) {
+                    Long maxSeq = messageRepository.findMaxSeq(conversationKey);
+                    sequence.lastSeq = maxSeq != null ? maxSeq : 0L;
+                }
+                long seq = sequence.lastSeq + 1;
+                MessageDTO stored;
+                try {
+                    stored = convertToDTO(messageRepository.save(new ChatMessage(conversationKey, seq, senderId, content)));
+                } catch (DataIntegrityViolationException e) {
+                    // Another node took this seq; continue from the stored maximum
+                    sequence.lastSeq = -1;
+                    if (attempt == MAX_APPEND_ATTEMPTS) {
+                        throw e;
+                    }
+                    log.warn("Sequence {} of {} already taken, retrying", seq, conversationKey);
+                    continue;
+                }
+                sequence.lastSeq = seq;
+                sequence.lastUsed = System.currentTimeMillis();
+                delivery.accept(stored);
+                return stored;
+            }
+        } finally {
+            sequence.lock.unlock();
+        }
+    }
+
+    private Sequence lockSequence(String conversationKey) {
+        while (true) {
+            Sequence sequence = sequences.computeIfAbsent(conversationKey, key -> new Sequence());
+            sequence.lock.lock();
+            if (!sequence.evicted) {
+                return sequence;
+            }
+            // Dropped while this thread waited for it; take the replacement
+            sequence.lock.unlock();
+        }
+    }
+
+    /**
+     * Drop the counters of conversations without a message for a while; an
+     * append holding one keeps it
+     */
+    @Scheduled(fixedDelayString = "${messages.sequence-sweep-interval-ms:60000}")
+    public void evictIdleSequences() {
+        long idleSince = System.currentTimeMillis() - sequenceIdleMillis;
+        sequences.forEach((conversationKey, sequence) -> {
+            if (sequence.lastUsed <= idleSince && sequence.lock.tryLock()) {
+                try {
+                    if (sequence.lastUsed <= idleSince) {
+                        sequence.evicted = true;
+                        sequences.remove(conversationKey, sequence);
+                    }
+                } finally {
+                    sequence.lock.unlock();
+                }
+            }
+        });
+    }
+
+    int getSequenceCount() {
+        return sequences.size();
+    }
+
+    /**
+     * Page of history older than a cursor, newest first; a null cursor
+     * starts from the latest message
+     */
+    public MessagePageDTO getHistory(String conversationKey, Long before, int limit) {
+        int size = clampPageSize(limit);
+        List<ChatMessage> page = messageRepository.findByConversationKeyAndSeqLessThanOrderBySeqDesc(
+                conversationKey, before != null ? before : Long.MAX_VALUE, PageRequest.of(0, size + 1));
+        return toPage(page, size);
+    }
+
+    /**
+     * Messages newer than a cursor, oldest first
+     */
+    public MessagePageDTO sync(String conversationKey, long after, int limit) {
+        int size = clampPageSize(limit);
+        List<ChatMessage> page = messageRepository.findByConversationKeyAndSeqGreaterThanOrderBySeqAsc(
+                conversationKey, after, PageRequest.of(0, size + 1));
+        return toPage(page, size);
+    }
+
+    /**
+     * Sync several conversations at once, skipping those the user may not read
+     */
+    public Map<String, MessagePageDTO> syncAll(Long userId, Map<String, Long> cursors, int limit) {
+        if (cursors.size() > maxSyncConversations) {
+            throw new IllegalArgumentException("At most " + maxSyncConversations + " conversations can be synced at once");
+        }
+        Map<String, MessagePageDTO> pages = new HashMap<>();
+        cursors.forEach((conversationKey, after) -> {
+            if (canAccess(userId, conversationKey)) {
+                pages.put(conversationKey, sync(conversationKey, after != null ? after : 0L, limit));
+            }
+        });
+        return pages;
+    }
+
+    /**
+     * Whether a user takes part in a conversation
+     */
+    public boolean canAccess(Long userId, String conversationKey) {
+        if (userId == null || conversationKey == null) {
+            return false;
+        }
+        String[] parts = conversationKey.split(":");
+        try {
+            if (parts.length == 3 && parts[0].equals("d")) {
+                return userId == Long.parseLong(parts[1]) || userId == Long.parseLong(parts[2]);
+            }
+            if (parts.length == 2 && parts[0].equals("g")) {
+                return membershipCache.isMember(Long.parseLong(parts[1]), userId);
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return false;
+    }
+
+    private MessagePageDTO toPage(List<ChatMessage> page, int size) {
+        boolean hasMore = page.size() > size;
+        List<MessageDTO> messages = new ArrayList<>(Math.min(page.size(), size));
+        for (int i = 0; i < page.size() && i < size; i++) {
+            messages.add(convertToDTO(page.get(i)));
+        }
+        Long nextCursor = messages.isEmpty() ? null : messages.get(messages.size() - 1).getSeq();
+        return new MessagePageDTO(messages, nextCursor, hasMore);
+    }
+
+    private static int clampPageSize(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private MessageDTO convertToDTO(ChatMessage message) {
+        return new MessageDTO(
+            message.getConversationKey(),
+            message.getSeq(),
+            message.getSenderId(),
+            message.getContent(),
+            message.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+        );
+    }
+
+    /**
+     * A ReentrantLock rather than a monitor, so virtual threads of the
+     * blocking lane waiting on the database do not pin their carrier
+     */
+    private static final class Sequence {
+        private final ReentrantLock lock = new ReentrantLock();
+        // -1 until loaded from the table
+        private long lastSeq = -1;
+        private volatile long lastUsed = System.currentTimeMillis();
+        // Set under the lock once removed from the map; holders must look it up again
+        private boolean evicted;
+    }
+}
@@ -0,0 +1,94 @@
+package com.p2pchat.service;
+
+import com.p2pchat.repository.UserRepository;
+import com.p2pchat.repository.UserRepository.PeerIdView;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of userId -> peerId and back.
+ *
+ * A user's peerId is assigned once at registration and never changes, so
+ * entries are never invalidated. Misses are resolved in a single bulk query.
+ */
+@Service
+public class PeerDirectory {
+
+    private final UserRepository userRepository;
+
+    // Resolved peer identities: userId -> peerId
+    private final Map<Long, String> peerIds = new ConcurrentHashMap<>();
+
+    // Reverse lookups: peerId -> userId
+    private final Map<String, Long> userIds = new ConcurrentHashMap<>();
+
+    public PeerDirectory(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Get the peerId of a user, or null if the user does not exist
+     */
+    public String getPeerId(Long userId) {
+        return resolvePeerIds(List.of(userId)).get(userId);
+    }
+
+    /**
+     * Get the peerIds of the given users; unknown users and users without a
+     * peerId are left out
+     */
+    public Map<Long, String> resolvePeerIds(Collection<Long> userIds) {
+        Map<Long, String> resolved = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long userId : userIds) {
+            String peerId = peerIds.get(userId);
+            if (peerId != null) {
+                resolved.put(userId, peerId);
+            } else {
+                missing.add(userId);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (PeerIdView view : userRepository.findPeerIdsByUserIds(missing)) {
+                if (view.getPeerId() != null) {
+                    remember(view.getUserId(), view.getPeerId());
+                }
+            }
+            for (Long userId : missing) {
+                String peerId = peerIds.get(userId);
+                if (peerId != null) {
+                    resolved.put(userId, peerId);
+                }
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Get the user owning a peerId, or null if no user has it
+     */
+    public Long getUserId(String peerId) {
+        Long userId = userIds.get(peerId);
+        if (userId == null && peerId != null) {
+            userId = userRepository.findByPeerId(peerId)
+                    .map(user -> {
+                        remember(user.getUserId(), user.getPeerId());
+                        return user.getUserId();
+                    })
+                    .orElse(null);
+        }
+        return userId;
+    }
+
+    private void remember(Long userId, String peerId) {
+        peerIds.put(userId, peerId);
+        userIds.put(peerId, userId);
+    }
+}
@@ -4,65 +4,178 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
 
 /**
- * Central registry for tracking online peers and their WebSocket sessions
+ * Central registry for tracking online peers and their WebSocket sessions.
+ *
+ * A peer may hold several sessions (one per tab). Each peer is an immutable
+ * snapshot that is replaced on every change, so lookups by peerId, sessionId
+ * or userId never block and never allocate. Writes are serialized per shard,
+ * chosen from the userId, which makes register and unregister atomic with
+ * respect to each other across the three indexes.
  */
 @Service
 public class PeerRegistry {
     
     private static final Logger log = LoggerFactory.getLogger(PeerRegistry.class);
+
+    /**
+     * Outcome of registering a session
+     */
+    public enum Registration {
+        REJECTED,       // The peerId belongs to another user
+        FIRST_SESSION,  // The peer had no live session before
+        ADDED_SESSION   // The peer was already online, e.g. in another tab
+    }
+
+    private static final int SHARD_COUNT = 64;
+    private static final String[] NO_SESSIONS = new String[0];
     
-    // Track online peers: peerId -> sessionId
-    private final Map<String, String> onlinePeers = new ConcurrentHashMap<>();
+    // Track online peers: peerId -> peer
+    private final Map<String, Peer> onlinePeers = new ConcurrentHashMap<>();
     
     // Track session -> peerId mapping (for cleanup)
     private final Map<String, String> sessionToPeer = new ConcurrentHashMap<>();
+
+    // Track userId -> peer, sharded; each shard also guards writes for its users
+    private final UserShard[] shards = new UserShard[SHARD_COUNT];
+
+    public PeerRegistry() {
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new UserShard();
+        }
+    }
     
     /**
-     * Register a peer as online
+     * Register a session of a peer as online
      */
-    public void registerPeer(String peerId, String sessionId) {
+    public Registration registerPeer(long userId, String peerId, String sessionId) {
         log.info("📝 Registering peer {} with session {}", peerId, sessionId);
-        onlinePeers.put(peerId, sessionId);
-        sessionToPeer.put(sessionId, peerId);
+
+        // A session re-registering under another peerId leaves its old peer first
+        String previousPeerId = sessionToPeer.get(sessionId);
+        if (previousPeerId != null && !previousPeerId.equals(peerId)) {
+            unregisterBySession(sessionId);
+        }
+
+        UserShard shard = shardFor(userId);
+        long stamp = shard.lock.writeLock();
+        try {
+            Peer current = onlinePeers.get(peerId);
+            if (current != null && current.userId != userId) {
+                log.warn("⚠️ Peer {} is registered to another user", peerId);
+                return Registration.REJECTED;
+            }
+            Peer updated = current == null
+                    ? new Peer(userId, peerId, new String[] {sessionId})
+                    : current.withSession(sessionId);
+            sessionToPeer.put(sessionId, peerId);
+            onlinePeers.put(peerId, updated);
+            shard.put(userId, updated);
+            return current != null && current.sessionCount() > 0
+                    ? Registration.ADDED_SESSION
+                    : Registration.FIRST_SESSION;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
     }
     
     /**
-     * Unregister a peer
+     * Unregister a peer and all of its sessions
      */
     public void unregisterPeer(String peerId) {
         if (peerId == null) {
             log.warn("⚠️ Cannot unregister peer: peerId is null");
             return;
         }
-        log.info("🗑️ Unregistering peer {}", peerId);
-        String sessionId = onlinePeers.remove(peerId);
-        if (sessionId != null) {
-            sessionToPeer.remove(sessionId);
+        while (true) {
+            Peer peer = onlinePeers.get(peerId);
+            if (peer == null) {
+                return;
+            }
+            UserShard shard = shardFor(peer.userId);
+            long stamp = shard.lock.writeLock();
+            try {
+                if (onlinePeers.get(peerId) != peer) {
+                    continue;
+                }
+                log.info("🗑️ Unregistering peer {}", peerId);
+                onlinePeers.remove(peerId);
+                for (String sessionId : peer.sessionIds) {
+                    sessionToPeer.remove(sessionId, peerId);
+                }
+                shard.remove(peer.userId, peer);
+                return;
+            } finally {
+                shard.lock.unlockWrite(stamp);
+            }
         }
     }
     
     /**
-     * Unregister peer by session ID
+     * Unregister one session of a peer
+     *
+     * @return the peerId the session belonged to, or null
      */
     public String unregisterBySession(String sessionId) {
-        String peerId = sessionToPeer.remove(sessionId);
-        if (peerId != null) {
-            onlinePeers.remove(peerId);
-            log.info("🗑️ Unregistered peer {} by session {}", peerId, sessionId);
+        while (true) {
+            String peerId = sessionToPeer.get(sessionId);
+            if (peerId == null) {
+                return null;
+            }
+            Peer peer = onlinePeers.get(peerId);
+            if (peer == null) {
+                // Peer was removed concurrently; drop the dangling session
+                return sessionToPeer.remove(sessionId, peerId) ? peerId : null;
+            }
+            UserShard shard = shardFor(peer.userId);
+            long stamp = shard.lock.writeLock();
+            try {
+                if (onlinePeers.get(peerId) != peer || !sessionToPeer.remove(sessionId, peerId)) {
+                    continue;
+                }
+                Peer updated = peer.withoutSession(sessionId);
+                if (updated.sessionIds.length == 0) {
+                    onlinePeers.remove(peerId);
+                    shard.remove(peer.userId, peer);
+                } else {
+                    onlinePeers.put(peerId, updated);
+                    shard.put(peer.userId, updated);
+                }
+            } finally {
+                shard.lock.unlockWrite(stamp);
+            }
+            log.info("🗑️ Unregistered session {} of peer {}", sessionId, peerId);
+            return peerId;
         }
-        return peerId;
     }
     
     /**
-     * Get session ID for a peer
+     * Get the most recently registered session ID for a peer
      */
     public String getSessionId(String peerId) {
+        Peer peer = onlinePeers.get(peerId);
+        return peer != null ? peer.latestSessionId() : null;
+    }
+
+    /**
+     * Get a peer with all of its sessions
+     */
+    public Peer getPeer(String peerId) {
         return onlinePeers.get(peerId);
     }
+
+    /**
+     * Get the online peer of a user
+     */
+    public Peer getPeerByUser(long userId) {
+        return shardFor(userId).get(userId);
+    }
     
     /**
      * Get peer ID for a session
@@ -81,17 +194,230 @@ public class PeerRegistry {
     /**
      * Get all online peer IDs
      */
-    public java.util.Set<String> getAllPeerIds() {
+    public Set<String> getAllPeerIds() {
         return onlinePeers.keySet();
     }
+
+    public int getPeerCount() {
+        return onlinePeers.size();
+    }
+
+    public int getSessionCount() {
+        return sessionToPeer.size();
+    }
     
     /**
      * Clear all peers (used for testing or emergency cleanup)
      */
     public void clearAll() {
         log.warn("⚠️ Clearing all peer registrations");
+        for (UserShard shard : shards) {
+            long stamp = shard.lock.writeLock();
+            try {
+                shard.clear();
+            } finally {
+                shard.lock.unlockWrite(stamp);
+            }
+        }
         onlinePeers.clear();
         sessionToPeer.clear();
     }
-}
 
+    private UserShard shardFor(long userId) {
+        return shards[(int) (mix(userId) >>> 58)];
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Immutable snapshot of an online peer
+     */
+    public static final class Peer {
+        private final long userId;
+        private final String peerId;
+        private final String[] sessionIds;
+
+        private Peer(long userId, String peerId, String[] sessionIds) {
+            this.userId = userId;
+            this.peerId = peerId;
+            this.sessionIds = sessionIds;
+        }
+
+        public long getUserId() { return userId; }
+
+        public String getPeerId() { return peerId; }
+
+        public int sessionCount() { return sessionIds.length; }
+
+        public String sessionIdAt(int index) { return sessionIds[index]; }
+
+        public String latestSessionId() {
+            return sessionIds.length > 0 ? sessionIds[sessionIds.length - 1] : null;
+        }
+
+        private Peer withSession(String sessionId) {
+            for (String existing : sessionIds) {
+                if (existing.equals(sessionId)) {
+                    return this;
+                }
+            }
+            String[] updated = Arrays.copyOf(sessionIds, sessionIds.length + 1);
+            updated[sessionIds.length] = sessionId;
+            return new Peer(userId, peerId, updated);
+        }
+
+        private Peer withoutSession(String sessionId) {
+            int index = -1;
+            for (int i = 0; i < sessionIds.length; i++) {
+                if (sessionIds[i].equals(sessionId)) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return this;
+            }
+            if (sessionIds.length == 1) {
+                return new Peer(userId, peerId, NO_SESSIONS);
+            }
+            String[] updated = new String[sessionIds.length - 1];
+            System.arraycopy(sessionIds, 0, updated, 0, index);
+            System.arraycopy(sessionIds, index + 1, updated, index, updated.length - index);
+            return new Peer(userId, peerId, updated);
+        }
+    }
+
+    /**
+     * Open-addressed userId -> peer table keyed by primitive longs.
+     * Reads are optimistic; writes hold the write lock.
+     */
+    private static final class UserShard {
+        private final StampedLock lock = new StampedLock();
+        private volatile Table table = new Table(16);
+        private int size;
+
+        Peer get(long userId) {
+            long stamp = lock.tryOptimisticRead();
+            Peer peer = table.find(userId);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    peer = table.find(userId);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return peer;
+        }
+
+        void put(long userId, Peer peer) {
+            Table current = table;
+            int slot = current.slotOf(userId);
+            if (current.values[slot] == null) {
+                if ((size + 1) * 2 > current.keys.length) {
+                    current = current.resize(current.keys.length * 2);
+                    table = current;
+                    slot = current.slotOf(userId);
+                }
+                size++;
+            }
+            current.keys[slot] = userId;
+            current.values[slot] = peer;
+        }
+
+        void remove(long userId, Peer expected) {
+            Table current = table;
+            int slot = current.slotOf(userId);
+            Peer existing = current.values[slot];
+            if (existing == null || !existing.peerId.equals(expected.peerId)) {
+                return;
+            }
+            current.delete(slot);
+            size--;
+        }
+
+        void clear() {
+            table = new Table(16);
+            size = 0;
+        }
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final Peer[] values;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Peer[capacity];
+        }
+
+        Peer find(long userId) {
+            int mask = keys.length - 1;
+            int slot = (int) mix(userId) & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                Peer peer = values[slot];
+                if (peer == null) {
+                    return null;
+                }
+                if (keys[slot] == userId) {
+                    return peer;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * Slot holding the key, or the empty slot where it would go
+         */
+        int slotOf(long userId) {
+            int mask = keys.length - 1;
+            int slot = (int) mix(userId) & mask;
+            while (values[slot] != null && keys[slot] != userId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        Table resize(int capacity) {
+            Table resized = new Table(capacity);
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null) {
+                    int slot = resized.slotOf(keys[i]);
+                    resized.keys[slot] = keys[i];
+                    resized.values[slot] = values[i];
+                }
+            }
+            return resized;
+        }
+
+        /**
+         * Linear-probing delete that shifts the following run back
+         */
+        void delete(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (values[next] == null) {
+                    break;
+                }
+                int home = (int) mix(keys[next]) & mask;
+                boolean between = gap <= next
+                        ? gap < home && home <= next
+                        : gap < home || home <= next;
+                if (!between) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    gap = next;
+                }
+            }
+            values[gap] = null;
+            keys[gap] = 0L;
+        }
+    }
+}
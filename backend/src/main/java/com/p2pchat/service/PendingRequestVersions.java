@@ -0,0 +1,60 @@
+package com.p2pchat.service;
+
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.event.RequestRespondedEvent;
+import com.p2pchat.event.RequestsCreatedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version of each user's pending request list, used as its ETag.
+ *
+ * A user's version moves whenever a request addressed to them is created or
+ * answered, so an unchanged list can be confirmed without a query. Versions
+ * start from the boot time, so tags handed out before a restart never match.
+ * Only this node's writes are seen, so versions are disabled in a cluster.
+ */
+@Service
+public class PendingRequestVersions {
+
+    private final boolean enabled;
+    private final long bootVersion;
+    private final AtomicLong clock;
+
+    // Users whose list changed since boot: userId -> version
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+
+    public PendingRequestVersions(ClusterNode clusterNode) {
+        this.enabled = !clusterNode.isEnabled();
+        this.bootVersion = System.currentTimeMillis();
+        this.clock = new AtomicLong(bootVersion);
+    }
+
+    /**
+     * Get the ETag of a user's pending requests, or null if lists are not versioned
+     */
+    public String getETag(Long userId) {
+        if (!enabled) {
+            return null;
+        }
+        return "\"" + userId + "-" + versions.getOrDefault(userId, bootVersion) + "\"";
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRequestsCreated(RequestsCreatedEvent event) {
+        event.getToUserIds().forEach(this::bump);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRequestResponded(RequestRespondedEvent event) {
+        bump(event.getToUserId());
+    }
+
+    private void bump(Long userId) {
+        versions.put(userId, clock.incrementAndGet());
+    }
+}
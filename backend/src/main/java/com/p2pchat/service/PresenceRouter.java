@@ -0,0 +1,140 @@
+package com.p2pchat.service;
+
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import com.p2pchat.event.FriendshipChangedEvent;
+import com.p2pchat.event.GroupMembershipChangedEvent;
+import com.p2pchat.repository.GroupRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers presence changes only to the users who care about them:
+ * the user's friends and the members of the user's groups.
+ *
+ * Audiences are cached per user while the user is online and dropped
+ * whenever a friendship or a group membership involving the user changes.
+ * Only this node's changes are seen, so audiences are not cached in a
+ * cluster.
+ */
+@Service
+public class PresenceRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceRouter.class);
+
+    private final FriendGraph friendGraph;
+    private final GroupRepository groupRepository;
+    private final PresenceStore presenceStore;
+    private final PeerRegistry peerRegistry;
+    private final SignalingRelay signalingRelay;
+    private final Counter framesSent;
+    private final Counter framesSaved;
+    private final boolean cacheAudiences;
+
+    // Cached audiences of online users: userId -> userIds interested in their presence
+    private final Map<Long, Set<Long>> audiences = new ConcurrentHashMap<>();
+    // Bumped on every invalidation, so an audience loaded across one is not cached
+    private final AtomicLong audiencesVersion = new AtomicLong();
+
+    public PresenceRouter(FriendGraph friendGraph, GroupRepository groupRepository,
+                          PresenceStore presenceStore, PeerRegistry peerRegistry,
+                          SignalingRelay signalingRelay, ClusterNode clusterNode, MeterRegistry meterRegistry) {
+        this.friendGraph = friendGraph;
+        this.groupRepository = groupRepository;
+        this.presenceStore = presenceStore;
+        this.peerRegistry = peerRegistry;
+        this.signalingRelay = signalingRelay;
+        this.cacheAudiences = !clusterNode.isEnabled();
+        this.framesSent = Counter.builder("presence.frames.sent")
+                .description("Presence frames delivered to interested peers")
+                .register(meterRegistry);
+        this.framesSaved = Counter.builder("presence.frames.saved")
+                .description("Presence frames avoided compared with a global broadcast")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Deliver a PEER_ONLINE / PEER_OFFLINE change of a user to their audience,
+     * serialized once for all of them
+     */
+    public void publish(Long userId, String peerId, SignalType type) {
+        int broadcastFrames = peerRegistry.getAllPeerIds().size();
+        int sent = 0;
+
+        if (userId != null) {
+            List<String> targetPeerIds = new ArrayList<>();
+            for (Long memberId : getAudience(userId)) {
+                String targetPeerId = presenceStore.getOnlinePeerId(memberId);
+                if (targetPeerId != null) {
+                    targetPeerIds.add(targetPeerId);
+                }
+            }
+            if (!targetPeerIds.isEmpty()) {
+                sent = signalingRelay.sendToPeers(type, peerId, targetPeerIds, null);
+            }
+            if (type == SignalType.PEER_OFFLINE) {
+                // Only online users' audiences are kept; the next PEER_ONLINE loads a fresh one
+                invalidate(userId);
+            }
+        }
+
+        framesSent.increment(sent);
+        framesSaved.increment(Math.max(0, broadcastFrames - sent));
+        log.debug("📤 Sent {} for {} to {} peers ({} online)", type, peerId, sent, broadcastFrames);
+    }
+
+    /**
+     * Get the users interested in a user's presence
+     */
+    public Set<Long> getAudience(Long userId) {
+        Set<Long> cached = audiences.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Loaded outside the map so a slow load does not hold up other users' lookups
+        long version = audiencesVersion.get();
+        Set<Long> audience = loadAudience(userId);
+        if (cacheAudiences && audiencesVersion.get() == version) {
+            Set<Long> raced = audiences.putIfAbsent(userId, audience);
+            return raced != null ? raced : audience;
+        }
+        return audience;
+    }
+
+    private Set<Long> loadAudience(Long userId) {
+        Set<Long> audience = new HashSet<>(friendGraph.getFriendIds(userId));
+        audience.addAll(groupRepository.findCoMemberIds(userId));
+        audience.remove(userId);
+        return Set.copyOf(audience);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        invalidate(event.getUserId());
+        invalidate(event.getFriendId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGroupMembershipChanged(GroupMembershipChangedEvent event) {
+        event.getMemberIds().forEach(this::invalidate);
+        invalidate(event.getChangedUserId());
+    }
+
+    private void invalidate(Long userId) {
+        audiencesVersion.incrementAndGet();
+        audiences.remove(userId);
+    }
+}
@@ -0,0 +1,245 @@
+package com.p2pchat.service;
+
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.dto.SignalingMessage;
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import com.p2pchat.entity.User.UserStatus;
+import com.p2pchat.offline.OfflineQueue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Presence state machine for peers.
+ *
+ * A dropped connection does not take a peer offline right away: the offline
+ * transition stays pending for a grace period and is cancelled if the peer
+ * registers again in the meantime, so a flapping connection produces no
+ * status write and no PEER_OFFLINE / PEER_ONLINE pair. The grace period has
+ * to outlast the client's reconnect delay plus the STOMP handshake. Expiry
+ * and reconnect both go through the peer's pendingOffline entry, so a
+ * reconnect either cancels the pending offline or comes after it is fully
+ * published.
+ *
+ * Only a peer's first session in the cluster announces it; more tabs of a
+ * peer that is already online, on this node or another, join quietly, and
+ * the peer goes offline only when its last tab on any node closes.
+ */
+@Service
+public class PresenceService {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceService.class);
+
+    private final PeerRegistry peerRegistry;
+    private final UserService userService;
+    private final PresenceRouter presenceRouter;
+    private final ClusterNode clusterNode;
+    private final OfflineQueue offlineQueue;
+    private final SignalingRelay signalingRelay;
+    private final long gracePeriodMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Counter flapsSuppressed;
+    private final Counter offlineCommitted;
+
+    // Pending offline transitions: peerId -> scheduled commit
+    private final Map<String, ScheduledFuture<?>> pendingOffline = new ConcurrentHashMap<>();
+
+    public PresenceService(PeerRegistry peerRegistry, UserService userService, PresenceRouter presenceRouter,
+                           ClusterNode clusterNode, OfflineQueue offlineQueue, SignalingRelay signalingRelay,
+                           MeterRegistry meterRegistry,
+                           @Value("${presence.grace-period-ms:15000}") long gracePeriodMillis) {
+        this.peerRegistry = peerRegistry;
+        this.userService = userService;
+        this.presenceRouter = presenceRouter;
+        this.clusterNode = clusterNode;
+        this.offlineQueue = offlineQueue;
+        this.signalingRelay = signalingRelay;
+        this.gracePeriodMillis = gracePeriodMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-grace");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flapsSuppressed = Counter.builder("presence.flaps.suppressed")
+                .description("Disconnects cancelled by a reconnect within the grace period")
+                .register(meterRegistry);
+        this.offlineCommitted = Counter.builder("presence.offline.committed")
+                .description("Peers taken offline")
+                .register(meterRegistry);
+        Gauge.builder("presence.grace.period", () -> this.gracePeriodMillis)
+                .description("Grace period before a dropped peer goes offline")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("presence.offline.pending", pendingOffline, Map::size)
+                .description("Disconnected peers waiting out the grace period")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A peer of an authenticated user registered on a session
+     */
+    public void peerOnline(long userId, String peerId, String sessionId) {
+        boolean onlineElsewhere = false;
+        if (sessionId != null) {
+            PeerRegistry.Registration registration = peerRegistry.registerPeer(userId, peerId, sessionId);
+            if (registration == PeerRegistry.Registration.REJECTED) {
+                return;
+            }
+            if (registration == PeerRegistry.Registration.ADDED_SESSION) {
+                log.debug("Peer {} is already online; added session {}", peerId, sessionId);
+                return;
+            }
+            onlineElsewhere = clusterNode.isClaimedElsewhere(peerId);
+            clusterNode.claim(peerId);
+            deliverQueued(peerId);
+        }
+
+        boolean[] resumed = new boolean[1];
+        pendingOffline.computeIfPresent(peerId, (id, pending) -> {
+            pending.cancel(false);
+            resumed[0] = true;
+            return null;
+        });
+        if (resumed[0]) {
+            flapsSuppressed.increment();
+            log.info("🔁 Peer {} reconnected within grace period (session: {})", peerId, sessionId);
+            return;
+        }
+        if (onlineElsewhere) {
+            log.debug("Peer {} is already online on another node; added session {}", peerId, sessionId);
+            return;
+        }
+
+        updateStatus(userId, peerId, UserStatus.ONLINE);
+        presenceRouter.publish(userId, peerId, SignalType.PEER_ONLINE);
+    }
+
+    /**
+     * A peer signed off explicitly; no grace period applies
+     */
+    public void peerOffline(long userId, String peerId) {
+        peerRegistry.unregisterPeer(peerId);
+        clusterNode.release(peerId);
+
+        ScheduledFuture<?> pending = pendingOffline.remove(peerId);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        commitOffline(userId, peerId);
+    }
+
+    /**
+     * A session closed; once its peer has no sessions left, the peer goes
+     * offline unless it re-registers within the grace period
+     *
+     * @return the peerId registered on the session, or null
+     */
+    public String sessionClosed(String sessionId) {
+        String peerId = peerRegistry.getPeerId(sessionId);
+        PeerRegistry.Peer peer = peerId != null ? peerRegistry.getPeer(peerId) : null;
+        if (peer == null || peerRegistry.unregisterBySession(sessionId) == null) {
+            return null;
+        }
+        if (peerRegistry.isPeerOnline(peerId)) {
+            // Other tabs of the peer are still connected
+            return peerId;
+        }
+        clusterNode.release(peerId);
+        if (clusterNode.isClaimed(peerId)) {
+            // Tabs of the peer on other nodes are still connected
+            return peerId;
+        }
+
+        long userId = peer.getUserId();
+        if (gracePeriodMillis <= 0) {
+            commitOffline(userId, peerId);
+            return peerId;
+        }
+
+        pendingOffline.compute(peerId, (id, previous) -> {
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+            self.set(scheduler.schedule(() -> expireGracePeriod(userId, id, self.get()),
+                    gracePeriodMillis, TimeUnit.MILLISECONDS));
+            return self.get();
+        });
+        return peerId;
+    }
+
+    /**
+     * Hand a peer everything queued for it while it was offline
+     */
+    private void deliverQueued(String peerId) {
+        List<SignalingMessage> queued = offlineQueue.drain(peerId);
+        if (queued.isEmpty()) {
+            return;
+        }
+        int delivered = 0;
+        for (SignalingMessage message : queued) {
+            if (signalingRelay.deliverLocal(message)) {
+                delivered++;
+            }
+        }
+        log.info("📬 Delivered {}/{} queued messages to peer {}", delivered, queued.size(), peerId);
+    }
+
+    /**
+     * Take a peer offline once its grace period runs out. The check and the
+     * commit run under the peer's pendingOffline entry, which a reconnect
+     * takes to cancel it, so the two cannot interleave.
+     */
+    private void expireGracePeriod(long userId, String peerId, ScheduledFuture<?> expected) {
+        pendingOffline.compute(peerId, (id, pending) -> {
+            if (pending != expected) {
+                // Cancelled by a reconnect or replaced by a later disconnect
+                return pending;
+            }
+            if (peerRegistry.isPeerOnline(id)) {
+                // Registered again; peerOnline is on its way to cancel this entry
+                return pending;
+            }
+            if (clusterNode.isClaimed(id)) {
+                // Reconnected to another node, which now answers for the peer
+                return null;
+            }
+            commitOffline(userId, id);
+            return null;
+        });
+    }
+
+    private void commitOffline(long userId, String peerId) {
+        updateStatus(userId, peerId, UserStatus.OFFLINE);
+        offlineCommitted.increment();
+        presenceRouter.publish(userId, peerId, SignalType.PEER_OFFLINE);
+        log.info("📤 Published PEER_OFFLINE for {}", peerId);
+    }
+
+    private void updateStatus(long userId, String peerId, UserStatus status) {
+        try {
+            userService.updateUserStatus(userId, status);
+        } catch (Exception e) {
+            log.warn("Could not update user status for peer {}: {}", peerId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
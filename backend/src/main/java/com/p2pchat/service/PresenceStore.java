@@ -0,0 +1,184 @@
+package com.p2pchat.service;
+
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.dto.UserDTO;
+import com.p2pchat.entity.User;
+import com.p2pchat.entity.User.UserStatus;
+import com.p2pchat.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory presence table, authoritative for user status and lastSeen.
+ *
+ * Status changes only touch memory; a background flusher writes the dirty
+ * rows back to the users table as one JDBC batch, each row with its own
+ * status and lastSeen.
+ *
+ * Each node only tracks the users connected to it. In cluster mode a user
+ * this node has not seen online is looked up in the cluster routing table,
+ * so users on other nodes still count as online.
+ */
+@Service
+public class PresenceStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceStore.class);
+
+    private static final String UPDATE_PRESENCE = "UPDATE users SET status = ?, last_seen = ? WHERE user_id = ?";
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ClusterNode clusterNode;
+    private final PeerDirectory peerDirectory;
+
+    // Track presence: userId -> presence
+    private final Map<Long, Presence> presences = new ConcurrentHashMap<>();
+
+    public PresenceStore(UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                         ClusterNode clusterNode, PeerDirectory peerDirectory) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.clusterNode = clusterNode;
+        this.peerDirectory = peerDirectory;
+    }
+
+    /**
+     * Update a user's status and lastSeen in memory
+     */
+    public void updateStatus(Long userId, UserStatus status) {
+        Presence presence = presences.get(userId);
+        if (presence == null) {
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("User not found"));
+            presence = track(user);
+        }
+        presence.update(status);
+    }
+
+    /**
+     * Get the current status of a user, OFFLINE if never seen
+     */
+    public UserStatus getStatus(Long userId) {
+        Presence presence = presences.get(userId);
+        if (presence != null && presence.status != UserStatus.OFFLINE) {
+            return presence.status;
+        }
+        return getRemotePeerId(userId, presence) != null ? UserStatus.ONLINE : UserStatus.OFFLINE;
+    }
+
+    /**
+     * Get the peerId of a user who is currently online or busy, else null
+     */
+    public String getOnlinePeerId(Long userId) {
+        Presence presence = presences.get(userId);
+        if (presence == null || presence.status == UserStatus.OFFLINE) {
+            return getRemotePeerId(userId, presence);
+        }
+        return presence.peerId;
+    }
+
+    /**
+     * Get the peerId of a user connected to another node, else null
+     */
+    private String getRemotePeerId(Long userId, Presence presence) {
+        if (!clusterNode.isEnabled()) {
+            return null;
+        }
+        String peerId = presence != null ? presence.peerId : peerDirectory.getPeerId(userId);
+        return clusterNode.isClaimed(peerId) ? peerId : null;
+    }
+
+    public List<UserDTO> getOnlineUsers() {
+        return presences.values()
+                .stream()
+                .filter(presence -> presence.status == UserStatus.ONLINE)
+                .map(Presence::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Write dirty presence rows back to the database
+     */
+    @Scheduled(fixedDelayString = "${presence.flush-interval-ms:1000}")
+    public void flush() {
+        List<Presence> dirty = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+
+        for (Presence presence : presences.values()) {
+            if (!presence.dirty.compareAndSet(true, false)) {
+                continue;
+            }
+            LocalDateTime lastSeen = presence.lastSeen;
+            dirty.add(presence);
+            rows.add(new Object[] {
+                presence.status.name(),
+                lastSeen != null ? Timestamp.valueOf(lastSeen) : null,
+                presence.userId
+            });
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            // Sent as one multi-row statement with rewriteBatchedStatements
+            jdbcTemplate.batchUpdate(UPDATE_PRESENCE, rows);
+            log.debug("💾 Flushed {} presence rows", rows.size());
+        } catch (Exception e) {
+            log.warn("Could not flush {} presence rows: {}", rows.size(), e.getMessage());
+            dirty.forEach(presence -> presence.dirty.set(true));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private Presence track(User user) {
+        return presences.computeIfAbsent(user.getUserId(), id -> new Presence(user));
+    }
+
+    private static final class Presence {
+        private final Long userId;
+        private final String username;
+        private final String email;
+        private final String avatarUrl;
+        private final String peerId;
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private volatile UserStatus status = UserStatus.OFFLINE;
+        private volatile LocalDateTime lastSeen;
+
+        private Presence(User user) {
+            this.userId = user.getUserId();
+            this.username = user.getUsername();
+            this.email = user.getEmail();
+            this.avatarUrl = user.getAvatarUrl();
+            this.peerId = user.getPeerId();
+            this.lastSeen = user.getLastSeen();
+        }
+
+        private void update(UserStatus status) {
+            this.status = status;
+            this.lastSeen = LocalDateTime.now();
+            this.dirty.set(true);
+        }
+
+        private UserDTO toDTO() {
+            return new UserDTO(userId, username, email, avatarUrl, status.name(), peerId);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.p2pchat.service;
 
+import com.p2pchat.dto.RequestDTO;
 import com.p2pchat.dto.SignalingMessage;
 import com.p2pchat.entity.Friend;
 import com.p2pchat.entity.Group;
@@ -7,42 +8,64 @@ import com.p2pchat.entity.Request;
 import com.p2pchat.entity.Request.RequestStatus;
 import com.p2pchat.entity.Request.RequestType;
 import com.p2pchat.entity.User;
+import com.p2pchat.event.FriendshipChangedEvent;
+import com.p2pchat.event.GroupMemberJoinedEvent;
+import com.p2pchat.event.GroupMembershipChangedEvent;
+import com.p2pchat.event.RequestRespondedEvent;
+import com.p2pchat.event.RequestsCreatedEvent;
 import com.p2pchat.repository.FriendRepository;
 import com.p2pchat.repository.GroupRepository;
 import com.p2pchat.repository.RequestRepository;
 import com.p2pchat.repository.UserRepository;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class RequestService {
     private final RequestRepository requestRepository;
     private final FriendRepository friendRepository;
+    private final FriendGraph friendGraph;
     private final GroupRepository groupRepository;
     private final UserRepository userRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final GroupBroadcaster groupBroadcaster;
+    private final SignalingRelay signalingRelay;
+    private final PresenceStore presenceStore;
+    private final PeerDirectory peerDirectory;
+    private final ApplicationEventPublisher eventPublisher;
 
     public RequestService(RequestRepository requestRepository, FriendRepository friendRepository, 
-                         GroupRepository groupRepository, UserRepository userRepository,
-                         SimpMessagingTemplate messagingTemplate) {
+                         FriendGraph friendGraph, GroupRepository groupRepository, UserRepository userRepository,
+                         GroupBroadcaster groupBroadcaster, SignalingRelay signalingRelay,
+                         PresenceStore presenceStore, PeerDirectory peerDirectory,
+                         ApplicationEventPublisher eventPublisher) {
         this.requestRepository = requestRepository;
         this.friendRepository = friendRepository;
+        this.friendGraph = friendGraph;
         this.groupRepository = groupRepository;
         this.userRepository = userRepository;
-        this.messagingTemplate = messagingTemplate;
+        this.groupBroadcaster = groupBroadcaster;
+        this.signalingRelay = signalingRelay;
+        this.presenceStore = presenceStore;
+        this.peerDirectory = peerDirectory;
+        this.eventPublisher = eventPublisher;
     }
 
     // Send friend request
     @Transactional
     public boolean sendFriendRequest(Long fromUserId, Long toUserId) {
         // Check if already friends
-        if (friendRepository.existsByUserIdAndFriendId(fromUserId, toUserId)) {
+        if (friendGraph.areFriends(fromUserId, toUserId)) {
             return false;
         }
 
@@ -53,16 +76,77 @@ public class RequestService {
 
         Request request = new Request(fromUserId, toUserId, RequestType.FRIEND, null);
         requestRepository.save(request);
+        eventPublisher.publishEvent(new RequestsCreatedEvent(fromUserId, RequestType.FRIEND, null, List.of(toUserId)));
         return true;
     }
 
     // Send group invitation
     @Transactional
     public boolean sendGroupInvitation(Long fromUserId, Long toUserId, Long groupId) {
+        return sendGroupInvitations(fromUserId, List.of(toUserId), groupId) > 0;
+    }
+
+    /**
+     * Invite many users to a group at once; the rows go out in one insert
+     * batch and invitees who are online are told right away
+     *
+     * @return the number of invitations created
+     */
+    @Transactional
+    public int sendGroupInvitations(Long fromUserId, Collection<Long> toUserIds, Long groupId) {
         // No duplicate check - allow inviting same person to multiple groups
-        Request request = new Request(fromUserId, toUserId, RequestType.GROUP, groupId);
-        requestRepository.save(request);
-        return true;
+        List<Long> inviteeIds = toUserIds.stream()
+                .filter(toUserId -> toUserId != null && !toUserId.equals(fromUserId))
+                .distinct()
+                .toList();
+        if (inviteeIds.isEmpty()) {
+            return 0;
+        }
+
+        List<Request> requests = new ArrayList<>(inviteeIds.size());
+        for (Long toUserId : inviteeIds) {
+            requests.add(new Request(fromUserId, toUserId, RequestType.GROUP, groupId));
+        }
+        requestRepository.saveAll(requests);
+        eventPublisher.publishEvent(new RequestsCreatedEvent(fromUserId, RequestType.GROUP, groupId, inviteeIds));
+        return requests.size();
+    }
+
+    /**
+     * Tell recipients who are online about their new requests as soon as
+     * they are committed, in one pass
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRequestsCreated(RequestsCreatedEvent event) {
+        List<String> onlinePeerIds = new ArrayList<>();
+        for (Long toUserId : event.getToUserIds()) {
+            String peerId = presenceStore.getOnlinePeerId(toUserId);
+            if (peerId != null) {
+                onlinePeerIds.add(peerId);
+            }
+        }
+        if (onlinePeerIds.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("requestType", event.getRequestType());
+        payload.put("targetId", event.getTargetId());
+        payload.put("fromUserId", event.getFromUserId());
+        signalingRelay.sendToPeers(
+            SignalingMessage.SignalType.REQUEST_RECEIVED,
+            peerDirectory.getPeerId(event.getFromUserId()),
+            onlinePeerIds,
+            payload
+        );
+    }
+
+    /**
+     * Keep pooled request ids clear of existing rows
+     */
+    @Transactional
+    public void alignRequestIds() {
+        requestRepository.alignIdSequence(Request.ID_ALLOCATION_SIZE);
     }
 
     // Accept request
@@ -76,11 +160,16 @@ public class RequestService {
                     request.setStatus(RequestStatus.ACCEPTED);
                     request.setRespondedAt(LocalDateTime.now());
                     requestRepository.save(request);
+                    eventPublisher.publishEvent(
+                        new RequestRespondedEvent(requestId, userId, RequestStatus.ACCEPTED));
 
-                    // If friend request, create friendship
-                    if (request.getRequestType() == RequestType.FRIEND) {
+                    // If friend request, create friendship unless a crossed request already did
+                    if (request.getRequestType() == RequestType.FRIEND
+                            && !friendGraph.areFriends(request.getFromUserId(), request.getToUserId())) {
                         friendRepository.save(new Friend(request.getFromUserId(), request.getToUserId()));
                         friendRepository.save(new Friend(request.getToUserId(), request.getFromUserId()));
+                        eventPublisher.publishEvent(
+                            new FriendshipChangedEvent(request.getFromUserId(), request.getToUserId(), true));
                     }
                     // If group invitation, add user to group
                     else if (request.getRequestType() == RequestType.GROUP && request.getTargetId() != null) {
@@ -88,9 +177,10 @@ public class RequestService {
                         if (group != null) {
                             group.addMember(userId);
                             groupRepository.save(group);
-                            
-                            // Broadcast to all group members that new member joined
-                            broadcastGroupMemberJoined(group, userId);
+                            eventPublisher.publishEvent(
+                                new GroupMembershipChangedEvent(group.getGroupId(), group.getMemberIds(), userId));
+                            eventPublisher.publishEvent(new GroupMemberJoinedEvent(
+                                group.getGroupId(), group.getGroupName(), group.getMemberIds(), userId));
                         }
                     }
 
@@ -99,7 +189,12 @@ public class RequestService {
                 .orElse(false);
     }
     
-    private void broadcastGroupMemberJoined(Group group, Long newMemberId) {
+    /**
+     * Tell the group that a member joined, once the membership is committed
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onGroupMemberJoined(GroupMemberJoinedEvent event) {
+        Long newMemberId = event.getNewMemberId();
         User newMember = userRepository.findById(newMemberId).orElse(null);
         if (newMember == null || newMember.getPeerId() == null) {
             return;
@@ -107,29 +202,32 @@ public class RequestService {
         
         // Prepare payload
         Map<String, Object> payload = new HashMap<>();
-        payload.put("groupId", group.getGroupId());
-        payload.put("groupName", group.getGroupName());
+        payload.put("groupId", event.getGroupId());
+        payload.put("groupName", event.getGroupName());
         payload.put("newMemberId", newMemberId);
         payload.put("newMemberPeerId", newMember.getPeerId());
         payload.put("newMemberUsername", newMember.getUsername());
-        payload.put("totalMembers", group.getMemberIds().size());
+        payload.put("totalMembers", event.getMemberIds().size());
         
-        // Send to all existing members (including the new member)
-        for (Long memberId : group.getMemberIds()) {
-            User member = userRepository.findById(memberId).orElse(null);
-            if (member != null && member.getPeerId() != null) {
-                SignalingMessage message = new SignalingMessage(
-                    SignalingMessage.SignalType.GROUP_MEMBER_JOINED,
-                    newMember.getPeerId(),
-                    member.getPeerId(),
-                    payload,
-                    System.currentTimeMillis()
-                );
-                
-                // Send to peer's personal topic
-                messagingTemplate.convertAndSend("/topic/peer/" + member.getPeerId(), message);
-            }
-        }
+        // Publish once to the existing members through the group topic
+        Set<Long> existingMemberIds = new HashSet<>(event.getMemberIds());
+        existingMemberIds.remove(newMemberId);
+        groupBroadcaster.broadcast(
+            event.getGroupId(),
+            existingMemberIds,
+            SignalingMessage.SignalType.GROUP_MEMBER_JOINED,
+            newMember.getPeerId(),
+            payload
+        );
+        
+        // The new member has not subscribed to the group topic yet; tell them directly
+        signalingRelay.sendToPeer(new SignalingMessage(
+            SignalingMessage.SignalType.GROUP_MEMBER_JOINED,
+            newMember.getPeerId(),
+            newMember.getPeerId(),
+            payload,
+            System.currentTimeMillis()
+        ));
     }
 
     // Reject request
@@ -143,24 +241,26 @@ public class RequestService {
                     request.setStatus(RequestStatus.REJECTED);
                     request.setRespondedAt(LocalDateTime.now());
                     requestRepository.save(request);
+                    eventPublisher.publishEvent(
+                        new RequestRespondedEvent(requestId, userId, RequestStatus.REJECTED));
                     return true;
                 })
                 .orElse(false);
     }
 
     // Get all pending requests for user
-    public List<Request> getPendingRequests(Long userId) {
-        return requestRepository.findByToUserIdAndStatus(userId, RequestStatus.PENDING);
+    public List<RequestDTO> getPendingRequests(Long userId) {
+        return requestRepository.findViewsByToUserIdAndStatus(userId, RequestStatus.PENDING);
     }
 
     // Get pending friend requests
-    public List<Request> getPendingFriendRequests(Long userId) {
-        return requestRepository.findByToUserIdAndRequestTypeAndStatus(userId, RequestType.FRIEND, RequestStatus.PENDING);
+    public List<RequestDTO> getPendingFriendRequests(Long userId) {
+        return requestRepository.findViewsByToUserIdAndRequestTypeAndStatus(userId, RequestType.FRIEND, RequestStatus.PENDING);
     }
 
     // Get pending group invitations
-    public List<Request> getPendingGroupInvitations(Long userId) {
-        return requestRepository.findByToUserIdAndRequestTypeAndStatus(userId, RequestType.GROUP, RequestStatus.PENDING);
+    public List<RequestDTO> getPendingGroupInvitations(Long userId) {
+        return requestRepository.findViewsByToUserIdAndRequestTypeAndStatus(userId, RequestType.GROUP, RequestStatus.PENDING);
     }
 }
 
@@ -0,0 +1,239 @@
+package com.p2pchat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.dto.SignalingMessage;
+import com.p2pchat.websocket.PeerSubscriptionRegistry;
+import com.p2pchat.websocket.PeerSubscriptionRegistry.PeerSubscription;
+import com.p2pchat.websocket.SignalingMetrics;
+import com.p2pchat.websocket.SignalingMetrics.UndeliverableReason;
+import com.p2pchat.websocket.SlowConsumerGuard;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * Point-to-point delivery of signaling messages to a peer's personal topic.
+ *
+ * With direct delivery enabled, the message is serialized once and handed to
+ * the client outbound channel already addressed to the target session and
+ * subscription, skipping the simple broker's destination matching. Sessions
+ * whose personal subscription is unknown fall back to the broker topic.
+ */
+@Service
+public class SignalingRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(SignalingRelay.class);
+
+    private final MessageChannel clientOutboundChannel;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PeerRegistry peerRegistry;
+    private final PeerSubscriptionRegistry subscriptionRegistry;
+    private final ObjectMapper objectMapper;
+    private final ClusterNode clusterNode;
+    private final SignalingMetrics signalingMetrics;
+    private final boolean directDelivery;
+
+    public SignalingRelay(@Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                          SimpMessagingTemplate messagingTemplate,
+                          PeerRegistry peerRegistry,
+                          PeerSubscriptionRegistry subscriptionRegistry,
+                          ObjectMapper objectMapper,
+                          ClusterNode clusterNode,
+                          SignalingMetrics signalingMetrics,
+                          @Value("${signaling.relay.direct-delivery:true}") boolean directDelivery) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.messagingTemplate = messagingTemplate;
+        this.peerRegistry = peerRegistry;
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.objectMapper = objectMapper;
+        this.clusterNode = clusterNode;
+        this.signalingMetrics = signalingMetrics;
+        this.directDelivery = directDelivery;
+    }
+
+    @PostConstruct
+    public void joinCluster() {
+        // Messages forwarded by other nodes are for peers connected here
+        clusterNode.start(this::deliverLocal);
+    }
+
+    /**
+     * Send a message to the peer named in its "to" field, forwarding it to
+     * every other node the peer has sessions on
+     *
+     * @return false if the target peer is not online
+     */
+    public boolean sendToPeer(SignalingMessage message) {
+        LocalDelivery local = deliverHere(message);
+        if (local == LocalDelivery.FAILED) {
+            // Already counted; no other node could serialize it either
+            return false;
+        }
+        if (clusterNode.forward(message) || local == LocalDelivery.SENT) {
+            return true;
+        }
+        signalingMetrics.undeliverable(message.getType(), UndeliverableReason.PEER_OFFLINE);
+        return false;
+    }
+
+    /**
+     * Send the same message to many peers. The message is serialized once
+     * and only the "to" field is filled in per recipient.
+     *
+     * @return the number of peers the message was delivered or forwarded to
+     */
+    public int sendToPeers(SignalingMessage.SignalType type, String from, Collection<String> peerIds, Object payload) {
+        long timestamp = System.currentTimeMillis();
+        SharedFrame frame = directDelivery
+                ? SharedFrame.of(objectMapper, new SignalingMessage(type, from, null, payload, timestamp))
+                : null;
+
+        int delivered = 0;
+        for (String peerId : peerIds) {
+            PeerRegistry.Peer peer = peerRegistry.getPeer(peerId);
+            if (peer != null && frame != null && hasSubscriptions(peer)) {
+                sendToSessions(peer, type, frame.addressedTo(peerId));
+                signalingMetrics.sent(type);
+                delivered++;
+            } else if (sendToPeer(new SignalingMessage(type, from, peerId, payload, timestamp))) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Send a message to every session of a peer connected to this node
+     *
+     * @return false if the target peer is not connected here or the message could not be sent
+     */
+    public boolean deliverLocal(SignalingMessage message) {
+        return deliverHere(message) == LocalDelivery.SENT;
+    }
+
+    private LocalDelivery deliverHere(SignalingMessage message) {
+        String peerId = message.getTo();
+        PeerRegistry.Peer peer = peerRegistry.getPeer(peerId);
+        if (peer == null) {
+            return LocalDelivery.NOT_CONNECTED;
+        }
+
+        // Addressed to each session's personal subscription, unless one is unknown
+        if (directDelivery && hasSubscriptions(peer)) {
+            byte[] payload;
+            try {
+                payload = objectMapper.writeValueAsBytes(message);
+            } catch (JsonProcessingException e) {
+                log.error("❌ Could not serialize {} for peer {}: {}", message.getType(), peerId, e.getMessage());
+                signalingMetrics.undeliverable(message.getType(), UndeliverableReason.SERIALIZATION);
+                return LocalDelivery.FAILED;
+            }
+            sendToSessions(peer, message.getType(), payload);
+            signalingMetrics.sent(message.getType());
+            return LocalDelivery.SENT;
+        }
+
+        messagingTemplate.convertAndSend(PeerSubscriptionRegistry.PEER_DESTINATION_PREFIX + peerId, message,
+                SlowConsumerGuard.headersFor(message.getType()));
+        signalingMetrics.sent(message.getType());
+        return LocalDelivery.SENT;
+    }
+
+    private boolean hasSubscriptions(PeerRegistry.Peer peer) {
+        int sessionCount = peer.sessionCount();
+        for (int i = 0; i < sessionCount; i++) {
+            if (subscriptionRegistry.getSubscription(peer.sessionIdAt(i), peer.getPeerId()) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void sendToSessions(PeerRegistry.Peer peer, SignalingMessage.SignalType type, byte[] payload) {
+        int sessionCount = peer.sessionCount();
+        for (int i = 0; i < sessionCount; i++) {
+            String sessionId = peer.sessionIdAt(i);
+            PeerSubscription subscription = subscriptionRegistry.getSubscription(sessionId, peer.getPeerId());
+            if (subscription != null) {
+                sendToSession(sessionId, subscription, type, payload);
+            }
+        }
+    }
+
+    private void sendToSession(String sessionId, PeerSubscription subscription, SignalingMessage.SignalType type,
+                               byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscription.subscriptionId());
+        accessor.setDestination(subscription.destination());
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(SlowConsumerGuard.SIGNAL_TYPE_HEADER, type);
+        accessor.setLeaveMutable(true);
+
+        clientOutboundChannel.send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+
+    private enum LocalDelivery {
+        SENT,
+        NOT_CONNECTED,
+        // Connected here, but the message could not be serialized
+        FAILED
+    }
+
+    /**
+     * A message serialized once without its "to" field, which is then written
+     * first for each recipient: {"to":"<peerId>", followed by the rest
+     */
+    record SharedFrame(byte[] tail) {
+
+        private static final byte[] HEAD = "{\"to\":\"".getBytes(StandardCharsets.UTF_8);
+
+        static SharedFrame of(ObjectMapper objectMapper, SignalingMessage message) {
+            byte[] rest;
+            try {
+                ObjectNode node = objectMapper.valueToTree(message);
+                node.remove("to");
+                rest = objectMapper.writeValueAsBytes(node);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                log.error("❌ Could not serialize shared {}: {}", message.getType(), e.getMessage());
+                return null;
+            }
+            // rest is "{...}": close the recipient's string, then carry on after its opening brace
+            boolean empty = rest.length <= 2;
+            byte[] tail = new byte[rest.length + (empty ? 0 : 1)];
+            tail[0] = '"';
+            if (empty) {
+                tail[1] = '}';
+            } else {
+                tail[1] = ',';
+                System.arraycopy(rest, 1, tail, 2, rest.length - 1);
+            }
+            return new SharedFrame(tail);
+        }
+
+        byte[] addressedTo(String peerId) {
+            byte[] to = JsonStringEncoder.getInstance().quoteAsUTF8(peerId);
+            byte[] frame = new byte[HEAD.length + to.length + tail.length];
+            System.arraycopy(HEAD, 0, frame, 0, HEAD.length);
+            System.arraycopy(to, 0, frame, HEAD.length, to.length);
+            System.arraycopy(tail, 0, frame, HEAD.length + to.length, tail.length);
+            return frame;
+        }
+    }
+}
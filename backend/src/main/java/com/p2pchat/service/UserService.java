@@ -4,11 +4,14 @@ import com.p2pchat.dto.UserDTO;
 import com.p2pchat.entity.User;
 import com.p2pchat.entity.User.UserStatus;
 import com.p2pchat.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -16,10 +19,21 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PresenceStore presenceStore;
+    private final long userCacheTtlMillis;
+    private final int userCacheMaxEntries;
     
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    // Recently looked up users: username -> user and when the entry goes stale
+    private final Map<String, CachedUser> usersByName = new ConcurrentHashMap<>();
+    
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, PresenceStore presenceStore,
+                       @Value("${auth.user-cache.ttl-ms:30000}") long userCacheTtlMillis,
+                       @Value("${auth.user-cache.max-entries:10000}") int userCacheMaxEntries) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.presenceStore = presenceStore;
+        this.userCacheTtlMillis = userCacheTtlMillis;
+        this.userCacheMaxEntries = userCacheMaxEntries;
     }
 
     public User registerUser(String username, String password, String email) {
@@ -38,24 +52,42 @@ public class UserService {
         return userRepository.save(user);
     }
 
+    /**
+     * Look up a user by name. Hits are kept for a short while so a burst of
+     * logins does not query the same row over and over; misses are not kept,
+     * so a name registered a moment ago is found at once.
+     */
     public User findByUsername(String username) {
-        return userRepository.findByUsername(username)
+        long now = System.currentTimeMillis();
+        CachedUser cached = usersByName.get(username);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.user;
+        }
+
+        User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        if (userCacheTtlMillis > 0) {
+            if (usersByName.size() >= userCacheMaxEntries) {
+                usersByName.values().removeIf(entry -> entry.expiresAt <= now);
+                if (usersByName.size() >= userCacheMaxEntries) {
+                    usersByName.clear();
+                }
+            }
+            usersByName.put(username, new CachedUser(user, now + userCacheTtlMillis));
+        }
+        return user;
     }
 
-    public User updateUserStatus(Long userId, UserStatus status) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        user.setStatus(status);
-        user.setLastSeen(LocalDateTime.now());
-        return userRepository.save(user);
+    /**
+     * Update user status in the presence table
+     * Persisted asynchronously by the presence flusher
+     */
+    public void updateUserStatus(Long userId, UserStatus status) {
+        presenceStore.updateStatus(userId, status);
     }
 
     public List<UserDTO> getOnlineUsers() {
-        return userRepository.findByStatus(UserStatus.ONLINE)
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return presenceStore.getOnlineUsers();
     }
 
     public List<UserDTO> getAllUsers() {
@@ -75,7 +107,7 @@ public class UserService {
         dto.setUsername(user.getUsername());
         dto.setEmail(user.getEmail());
         dto.setAvatarUrl(user.getAvatarUrl());
-        dto.setStatus(user.getStatus().name());
+        dto.setStatus(presenceStore.getStatus(user.getUserId()).name());
         dto.setPeerId(user.getPeerId());
         return dto;
     }
@@ -91,5 +123,8 @@ public class UserService {
     public void setAllUsersOffline() {
         userRepository.updateAllUsersStatus(UserStatus.OFFLINE);
     }
+
+    private record CachedUser(User user, long expiresAt) {
+    }
 }
 
@@ -0,0 +1,105 @@
+package com.p2pchat.websocket;
+
+import com.p2pchat.service.GroupMembershipCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Authorizes subscriptions to /topic/group/{groupId} against the group's
+ * members and remembers them, so they can be revoked when a member leaves.
+ * Subscriptions from sessions that are not members are dropped.
+ */
+@Component
+public class GroupTopicInterceptor implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupTopicInterceptor.class);
+
+    public static final String GROUP_DESTINATION_PREFIX = "/topic/group/";
+
+    private final GroupMembershipCache membershipCache;
+
+    // Group topic subscriptions: sessionId -> (subscriptionId -> subscription)
+    private final Map<String, Map<String, GroupSubscription>> subscriptions = new ConcurrentHashMap<>();
+
+    public GroupTopicInterceptor(GroupMembershipCache membershipCache) {
+        this.membershipCache = membershipCache;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null || accessor.getSessionId() == null) {
+            return message;
+        }
+
+        StompCommand command = accessor.getCommand();
+        String sessionId = accessor.getSessionId();
+
+        if (command == StompCommand.SUBSCRIBE) {
+            String destination = accessor.getDestination();
+            if (destination == null || !destination.startsWith(GROUP_DESTINATION_PREFIX)) {
+                return message;
+            }
+            Long groupId = parseGroupId(destination);
+            Long userId = StompAuthenticationInterceptor.getUserId(accessor);
+            if (groupId == null || userId == null || !membershipCache.isMember(groupId, userId)) {
+                log.warn("🚫 Rejected subscription to {} by user {} (session: {})", destination, userId, sessionId);
+                return null;
+            }
+            subscriptions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                    .put(accessor.getSubscriptionId(),
+                         new GroupSubscription(groupId, userId, sessionId, accessor.getSubscriptionId()));
+        } else if (command == StompCommand.UNSUBSCRIBE) {
+            Map<String, GroupSubscription> sessionSubscriptions = subscriptions.get(sessionId);
+            if (sessionSubscriptions != null && accessor.getSubscriptionId() != null) {
+                sessionSubscriptions.remove(accessor.getSubscriptionId());
+            }
+        } else if (command == StompCommand.DISCONNECT) {
+            subscriptions.remove(sessionId);
+        }
+        return message;
+    }
+
+    /**
+     * Forget the subscriptions to a group's topic held by users who are no
+     * longer members
+     *
+     * @return the subscriptions to cancel at the broker
+     */
+    public List<GroupSubscription> revokeNonMembers(Long groupId, Set<Long> memberIds) {
+        List<GroupSubscription> revoked = new ArrayList<>();
+        for (Map<String, GroupSubscription> sessionSubscriptions : subscriptions.values()) {
+            sessionSubscriptions.values().removeIf(subscription -> {
+                boolean stale = subscription.groupId().equals(groupId) && !memberIds.contains(subscription.userId());
+                if (stale) {
+                    revoked.add(subscription);
+                }
+                return stale;
+            });
+        }
+        return revoked;
+    }
+
+    private static Long parseGroupId(String destination) {
+        try {
+            return Long.valueOf(destination.substring(GROUP_DESTINATION_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public record GroupSubscription(Long groupId, Long userId, String sessionId, String subscriptionId) {}
+}
@@ -0,0 +1,78 @@
+package com.p2pchat.websocket;
+
+import com.p2pchat.security.UserPrincipal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which STOMP subscription each session opened on its personal
+ * /topic/peer/{peerId} destination, so signaling can be addressed to the
+ * session directly instead of going through the broker's subscription scan.
+ * A session may only subscribe to the topic of its own peer.
+ */
+@Component
+public class PeerSubscriptionRegistry implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(PeerSubscriptionRegistry.class);
+
+    public static final String PEER_DESTINATION_PREFIX = "/topic/peer/";
+
+    // Track personal topic subscriptions: sessionId -> subscription
+    private final Map<String, PeerSubscription> subscriptions = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null || accessor.getSessionId() == null) {
+            return message;
+        }
+
+        StompCommand command = accessor.getCommand();
+        String sessionId = accessor.getSessionId();
+
+        if (command == StompCommand.SUBSCRIBE) {
+            String destination = accessor.getDestination();
+            if (destination != null && destination.startsWith(PEER_DESTINATION_PREFIX)) {
+                String peerId = destination.substring(PEER_DESTINATION_PREFIX.length());
+                UserPrincipal principal = StompAuthenticationInterceptor.getPrincipal(accessor);
+                if (principal == null || !peerId.equals(principal.getPeerId())) {
+                    log.warn("🚫 Rejected subscription to {} (session: {})", destination, sessionId);
+                    return null;
+                }
+                subscriptions.put(sessionId, new PeerSubscription(peerId, accessor.getSubscriptionId(), destination));
+            }
+        } else if (command == StompCommand.UNSUBSCRIBE) {
+            PeerSubscription current = subscriptions.get(sessionId);
+            if (current != null && current.subscriptionId().equals(accessor.getSubscriptionId())) {
+                subscriptions.remove(sessionId, current);
+            }
+        } else if (command == StompCommand.DISCONNECT) {
+            subscriptions.remove(sessionId);
+        }
+        return message;
+    }
+
+    /**
+     * Get the personal topic subscription of a session, or null if the
+     * session has not subscribed to the given peer's topic
+     */
+    public PeerSubscription getSubscription(String sessionId, String peerId) {
+        PeerSubscription subscription = subscriptions.get(sessionId);
+        if (subscription == null || !subscription.peerId().equals(peerId)) {
+            return null;
+        }
+        return subscription;
+    }
+
+    public record PeerSubscription(String peerId, String subscriptionId, String destination) {}
+}
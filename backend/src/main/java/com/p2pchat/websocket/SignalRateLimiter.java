@@ -0,0 +1,188 @@
+package com.p2pchat.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how fast each session may publish to /app/signal/*.
+ *
+ * Every session has one token bucket per kind of frame, so a client stuck
+ * in a loop on peer-online cannot use up the budget for ICE or offers.
+ * Buckets are kept as the time at which they will be full again and taken
+ * from with a compare-and-set, so the check never locks. Frames over budget
+ * are dropped before they reach a handler, and counted.
+ */
+@Component
+public class SignalRateLimiter implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(SignalRateLimiter.class);
+
+    private static final String SIGNAL_DESTINATION_PREFIX = "/app/signal/";
+
+    public enum Category {
+        ICE, OFFER, TYPING, PRESENCE, MESSAGE
+    }
+
+    private static final Map<String, Category> CATEGORIES = Map.of(
+        "ice-candidate", Category.ICE,
+        "ice-candidates", Category.ICE,
+        "offer", Category.OFFER,
+        "answer", Category.OFFER,
+        "call-request", Category.OFFER,
+        "call-accept", Category.OFFER,
+        "call-reject", Category.OFFER,
+        "typing", Category.TYPING,
+        "peer-online", Category.PRESENCE,
+        "peer-offline", Category.PRESENCE
+    );
+
+    private final boolean enabled;
+    private final LongSupplier nanoClock;
+    // Per category: time one token takes to refill, and how far ahead of now a bucket may run (its size)
+    private final long[] refillNanos = new long[Category.values().length];
+    private final long[] burstNanos = new long[Category.values().length];
+    private final Map<Category, Counter> throttled = new EnumMap<>(Category.class);
+
+    // Buckets per session: sessionId -> per category, the nanoTime at which the bucket is full again
+    private final Map<String, AtomicLongArray> buckets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SignalRateLimiter(MeterRegistry meterRegistry,
+                             @Value("${signaling.rate-limit.enabled:true}") boolean enabled,
+                             @Value("${signaling.rate-limit.ice.per-second:50}") double icePerSecond,
+                             @Value("${signaling.rate-limit.ice.burst:200}") int iceBurst,
+                             @Value("${signaling.rate-limit.offer.per-second:5}") double offerPerSecond,
+                             @Value("${signaling.rate-limit.offer.burst:20}") int offerBurst,
+                             @Value("${signaling.rate-limit.typing.per-second:2}") double typingPerSecond,
+                             @Value("${signaling.rate-limit.typing.burst:5}") int typingBurst,
+                             @Value("${signaling.rate-limit.presence.per-second:0.2}") double presencePerSecond,
+                             @Value("${signaling.rate-limit.presence.burst:3}") int presenceBurst,
+                             @Value("${signaling.rate-limit.message.per-second:20}") double messagePerSecond,
+                             @Value("${signaling.rate-limit.message.burst:50}") int messageBurst) {
+        this(meterRegistry, System::nanoTime, enabled, icePerSecond, iceBurst, offerPerSecond, offerBurst,
+                typingPerSecond, typingBurst, presencePerSecond, presenceBurst, messagePerSecond, messageBurst);
+    }
+
+    SignalRateLimiter(MeterRegistry meterRegistry, LongSupplier nanoClock, boolean enabled,
+                      double icePerSecond, int iceBurst, double offerPerSecond, int offerBurst,
+                      double typingPerSecond, int typingBurst, double presencePerSecond, int presenceBurst,
+                      double messagePerSecond, int messageBurst) {
+        this.enabled = enabled;
+        this.nanoClock = nanoClock;
+        configure(Category.ICE, icePerSecond, iceBurst);
+        configure(Category.OFFER, offerPerSecond, offerBurst);
+        configure(Category.TYPING, typingPerSecond, typingBurst);
+        configure(Category.PRESENCE, presencePerSecond, presenceBurst);
+        configure(Category.MESSAGE, messagePerSecond, messageBurst);
+        for (Category category : Category.values()) {
+            throttled.put(category, Counter.builder("signaling.frames.throttled")
+                    .description("Inbound signaling frames dropped for exceeding the session's rate limit")
+                    .tag("category", category.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    private void configure(Category category, double perSecond, int burst) {
+        long refill = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        refillNanos[category.ordinal()] = refill;
+        burstNanos[category.ordinal()] = refill * Math.max(burst, 1);
+    }
+
+    /**
+     * Get the budget a signal destination is charged to, or null for
+     * destinations that are not rate limited
+     */
+    public static Category categoryOf(String destination) {
+        if (destination == null || !destination.startsWith(SIGNAL_DESTINATION_PREFIX)) {
+            return null;
+        }
+        String name = destination.substring(SIGNAL_DESTINATION_PREFIX.length());
+        return CATEGORIES.getOrDefault(name, Category.MESSAGE);
+    }
+
+    /**
+     * Buckets for a new session, all of them full
+     */
+    private AtomicLongArray newBuckets() {
+        long now = nanoClock.getAsLong();
+        AtomicLongArray sessionBuckets = new AtomicLongArray(Category.values().length);
+        for (int i = 0; i < sessionBuckets.length(); i++) {
+            sessionBuckets.set(i, now);
+        }
+        return sessionBuckets;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (sessionId == null) {
+            return message;
+        }
+
+        if (messageType == SimpMessageType.DISCONNECT) {
+            buckets.remove(sessionId);
+            return message;
+        }
+        if (!enabled || messageType != SimpMessageType.MESSAGE) {
+            return message;
+        }
+
+        Category category = categoryOf(SimpMessageHeaderAccessor.getDestination(headers));
+        if (category == null || tryAcquire(sessionId, category)) {
+            return message;
+        }
+
+        throttled.get(category).increment();
+        log.debug("🚦 Throttled {} frame from session {}", category, sessionId);
+        return null;
+    }
+
+    /**
+     * Take one token from a session's bucket
+     *
+     * @return false if the bucket is empty
+     */
+    private boolean tryAcquire(String sessionId, Category category) {
+        AtomicLongArray sessionBuckets = buckets.get(sessionId);
+        if (sessionBuckets == null) {
+            sessionBuckets = buckets.computeIfAbsent(sessionId, id -> newBuckets());
+        }
+
+        int slot = category.ordinal();
+        long refill = refillNanos[slot];
+        long burst = burstNanos[slot];
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long fullAt = sessionBuckets.get(slot);
+            // A bucket that filled up in the past starts from full now
+            long base = fullAt - now > 0 ? fullAt : now;
+            long next = base + refill;
+            if (next - now > burst) {
+                return false;
+            }
+            if (sessionBuckets.compareAndSet(slot, fullAt, next)) {
+                return true;
+            }
+        }
+    }
+}
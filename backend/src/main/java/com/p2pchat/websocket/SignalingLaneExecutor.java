@@ -0,0 +1,139 @@
+package com.p2pchat.websocket;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor for the client inbound channel that splits traffic into two lanes.
+ *
+ * Pure relay frames (offers, answers, ICE, call control, typing) run on this
+ * executor's own small pool and never wait behind the database. Everything
+ * else, including presence changes, stored messages and session lifecycle
+ * frames, runs on the blocking lane: virtual threads when the runtime
+ * supports them, otherwise a bounded platform thread pool. Time from dispatch
+ * to completion is recorded per lane, and time spent in the handler per
+ * signaling endpoint.
+ */
+public class SignalingLaneExecutor extends ThreadPoolTaskExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(SignalingLaneExecutor.class);
+
+    private static final Set<String> RELAY_DESTINATIONS = Set.of(
+        "/app/signal/offer",
+        "/app/signal/answer",
+        "/app/signal/ice-candidate",
+        "/app/signal/ice-candidates",
+        "/app/signal/call-request",
+        "/app/signal/call-accept",
+        "/app/signal/call-reject",
+        "/app/signal/typing"
+    );
+
+    private final ExecutorService blockingLane;
+    private final Timer relayLatency;
+    private final Timer blockingLatency;
+    private final SignalingMetrics signalingMetrics;
+
+    public SignalingLaneExecutor(int relayPoolSize, boolean virtualThreads, int blockingPoolSize,
+                                 MeterRegistry meterRegistry, SignalingMetrics signalingMetrics) {
+        setCorePoolSize(relayPoolSize);
+        setMaxPoolSize(relayPoolSize);
+        setThreadNamePrefix("signal-relay-");
+        this.blockingLane = newBlockingLane(virtualThreads, blockingPoolSize);
+        this.relayLatency = laneTimer("relay", meterRegistry);
+        this.blockingLatency = laneTimer("blocking", meterRegistry);
+        this.signalingMetrics = signalingMetrics;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long dispatched = System.nanoTime();
+        if (isRelay(task)) {
+            super.execute(() -> run(task, relayLatency, dispatched));
+        } else {
+            blockingLane.execute(() -> run(task, blockingLatency, dispatched));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        blockingLane.shutdown();
+    }
+
+    public int getBlockingLaneQueueSize() {
+        return blockingLane instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+    }
+
+    private void run(Runnable task, Timer laneTimer, long dispatched) {
+        Timer handleTimer = signalingMetrics.handleTimer(handlerDestination(task));
+        long started = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            long finished = System.nanoTime();
+            laneTimer.record(finished - dispatched, TimeUnit.NANOSECONDS);
+            if (handleTimer != null) {
+                handleTimer.record(finished - started, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * The destination of a frame on its way to a @MessageMapping method; the
+     * broker handlers receive every frame too and are not timed
+     */
+    private static String handlerDestination(Runnable task) {
+        if (!(task instanceof MessageHandlingRunnable handlingRunnable)
+                || !(handlingRunnable.getMessageHandler() instanceof SimpAnnotationMethodMessageHandler)) {
+            return null;
+        }
+        return SimpMessageHeaderAccessor.getDestination(handlingRunnable.getMessage().getHeaders());
+    }
+
+    private static boolean isRelay(Runnable task) {
+        if (!(task instanceof MessageHandlingRunnable handlingRunnable)) {
+            return false;
+        }
+        Message<?> message = handlingRunnable.getMessage();
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        return destination != null && RELAY_DESTINATIONS.contains(destination);
+    }
+
+    private static Timer laneTimer(String lane, MeterRegistry meterRegistry) {
+        return Timer.builder("signaling.lane.latency")
+                .description("Time from dispatch to completion of inbound signaling frames")
+                .tag("lane", lane)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private static ExecutorService newBlockingLane(boolean virtualThreads, int poolSize) {
+        if (virtualThreads) {
+            try {
+                // Available from Java 21; looked up reflectively to keep building on 17
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                log.info("🧵 Signaling blocking lane runs on virtual threads");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.info("🧵 Virtual threads unavailable, blocking lane uses {} platform threads", poolSize);
+            }
+        }
+        return Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("signal-blocking-"));
+    }
+}
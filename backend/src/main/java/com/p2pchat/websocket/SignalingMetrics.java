@@ -0,0 +1,153 @@
+package com.p2pchat.websocket;
+
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import com.p2pchat.service.PeerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Meters for the signaling path: handling time per @MessageMapping,
+ * messages sent per SignalType, messages that could not be delivered and
+ * why, and gauges for registered peers and the channel queues.
+ *
+ * Every meter used per frame is created up front or on first use and then
+ * looked up from a map or array, so recording allocates nothing.
+ */
+@Component
+public class SignalingMetrics {
+
+    /**
+     * Why a signaling message was not delivered
+     */
+    public enum UndeliverableReason {
+        PEER_OFFLINE,      // Target peer is connected to no node
+        UNAUTHENTICATED,   // Sending session has no principal
+        INVALID,           // Missing or malformed payload
+        FORBIDDEN,         // Sender may not reach the target (e.g. not a group member)
+        SERIALIZATION      // Message could not be written as JSON
+    }
+
+    private static final List<String> ENDPOINTS = List.of(
+        "offer",
+        "answer",
+        "ice-candidate",
+        "ice-candidates",
+        "peer-online",
+        "peer-offline",
+        "call-request",
+        "call-accept",
+        "call-reject",
+        "typing",
+        "group-message",
+        "message"
+    );
+
+    private static final String ENDPOINT_PREFIX = "/app/signal/";
+
+    private final MeterRegistry meterRegistry;
+
+    // Handling time per destination: "/app/signal/offer" -> timer
+    private final Map<String, Timer> handleTimers = new HashMap<>();
+    private final Map<SignalType, Counter> sent = new EnumMap<>(SignalType.class);
+    // Registered on first use: [type][reason]
+    private final Counter[][] undeliverable =
+            new Counter[SignalType.values().length][UndeliverableReason.values().length];
+
+    public SignalingMetrics(MeterRegistry meterRegistry, PeerRegistry peerRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (String endpoint : ENDPOINTS) {
+            handleTimers.put(ENDPOINT_PREFIX + endpoint, Timer.builder("signaling.handle.latency")
+                    .description("Time spent in a @MessageMapping handler")
+                    .tag("endpoint", endpoint)
+                    .publishPercentileHistogram()
+                    .maximumExpectedValue(Duration.ofSeconds(5))
+                    .register(meterRegistry));
+        }
+        for (SignalType type : SignalType.values()) {
+            sent.put(type, Counter.builder("signaling.messages.sent")
+                    .description("Signaling messages handed to a session of the target peer")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("signaling.peers", peerRegistry, PeerRegistry::getPeerCount)
+                .description("Peers registered on this node")
+                .register(meterRegistry);
+        Gauge.builder("signaling.peer.sessions", peerRegistry, PeerRegistry::getSessionCount)
+                .description("Sessions of registered peers on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get the timer for frames sent to a destination, or null if the
+     * destination is not a signaling endpoint
+     */
+    public Timer handleTimer(String destination) {
+        return destination != null ? handleTimers.get(destination) : null;
+    }
+
+    public void sent(SignalType type) {
+        if (type != null) {
+            sent.get(type).increment();
+        }
+    }
+
+    public void undeliverable(SignalType type, UndeliverableReason reason) {
+        if (type == null) {
+            return;
+        }
+        Counter counter = undeliverable[type.ordinal()][reason.ordinal()];
+        if (counter == null) {
+            // Registering is idempotent, so racing threads end up with the same counter
+            counter = Counter.builder("signaling.messages.undeliverable")
+                    .description("Signaling messages that could not be delivered")
+                    .tag("type", type.name())
+                    .tag("reason", reason.name())
+                    .register(meterRegistry);
+            undeliverable[type.ordinal()][reason.ordinal()] = counter;
+        }
+        counter.increment();
+    }
+
+    /**
+     * Export the depth of the client inbound channel's queues, per lane
+     */
+    public void monitorInboundChannel(SignalingLaneExecutor executor) {
+        Gauge.builder("signaling.channel.queue", executor, SignalingMetrics::queueSize)
+                .description("Frames waiting for a channel thread")
+                .tags("channel", "inbound", "lane", "relay")
+                .register(meterRegistry);
+        Gauge.builder("signaling.channel.queue", executor, SignalingLaneExecutor::getBlockingLaneQueueSize)
+                .description("Frames waiting for a channel thread")
+                .tags("channel", "inbound", "lane", "blocking")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Export the depth of the client outbound channel's queue
+     */
+    public void monitorOutboundChannel(ThreadPoolTaskExecutor executor) {
+        Gauge.builder("signaling.channel.queue", executor, SignalingMetrics::queueSize)
+                .description("Frames waiting for a channel thread")
+                .tags("channel", "outbound", "lane", "default")
+                .register(meterRegistry);
+    }
+
+    private static int queueSize(ThreadPoolTaskExecutor executor) {
+        try {
+            return executor.getThreadPoolExecutor().getQueue().size();
+        } catch (IllegalStateException e) {
+            // Not initialized yet
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.p2pchat.websocket;
+
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sheds low-priority frames for sessions that have stopped reading.
+ *
+ * Each session's socket writes are timed; while a write has been blocked for
+ * longer than the slow-consumer threshold, outbound TYPING and PEER_* frames
+ * for that session are dropped instead of being buffered, so call setup
+ * (offers, answers, ICE) keeps the bounded send buffer to itself. Sessions
+ * that still overflow the buffer are closed by the transport and counted.
+ */
+@Component
+public class SlowConsumerGuard implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowConsumerGuard.class);
+
+    /**
+     * Message header naming the signal type of an outbound frame
+     */
+    public static final String SIGNAL_TYPE_HEADER = "signalType";
+
+    private static final Set<SignalType> LOW_PRIORITY = Set.of(
+        SignalType.TYPING,
+        SignalType.PEER_ONLINE,
+        SignalType.PEER_OFFLINE
+    );
+
+    private final long slowThresholdNanos;
+    private final Counter sessionsEvicted;
+    private final Map<SignalType, Counter> framesDropped = new EnumMap<>(SignalType.class);
+
+    // Start of the write in progress per session, 0 when idle: sessionId -> nanoTime
+    private final Map<String, AtomicLong> writeStartedAt = new ConcurrentHashMap<>();
+
+    public SlowConsumerGuard(MeterRegistry meterRegistry,
+                             @Value("${signaling.transport.slow-consumer-threshold-ms:500}") long slowThresholdMillis) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.sessionsEvicted = Counter.builder("websocket.sessions.evicted")
+                .description("Sessions closed for exceeding the send time or buffer limit")
+                .register(meterRegistry);
+        Gauge.builder("websocket.sessions", writeStartedAt, Map::size)
+                .description("WebSocket sessions open on this node")
+                .register(meterRegistry);
+        for (SignalType type : LOW_PRIORITY) {
+            framesDropped.put(type, Counter.builder("websocket.frames.dropped")
+                    .description("Low-priority frames dropped for slow sessions")
+                    .tag("type", type.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Headers tagging an outbound message with its signal type
+     */
+    public static MessageHeaders headersFor(SignalType type) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setHeader(SIGNAL_TYPE_HEADER, type);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        Object type = message.getHeaders().get(SIGNAL_TYPE_HEADER);
+        if (!(type instanceof SignalType signalType) || !LOW_PRIORITY.contains(signalType)) {
+            return message;
+        }
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        AtomicLong startedAt = sessionId != null ? writeStartedAt.get(sessionId) : null;
+        if (startedAt == null) {
+            return message;
+        }
+
+        long started = startedAt.get();
+        if (started != 0 && System.nanoTime() - started > slowThresholdNanos) {
+            framesDropped.get(signalType).increment();
+            return null;
+        }
+        return message;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                AtomicLong startedAt = new AtomicLong();
+                writeStartedAt.put(session.getId(), startedAt);
+                super.afterConnectionEstablished(new TimedSession(session, startedAt));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                writeStartedAt.remove(session.getId());
+                if (CloseStatus.SESSION_NOT_RELIABLE.equalsCode(closeStatus)) {
+                    sessionsEvicted.increment();
+                    log.warn("🐢 Evicted slow session {}: {}", session.getId(), closeStatus.getReason());
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Records when a socket write starts and clears it once the write returns
+     */
+    private static class TimedSession extends WebSocketSessionDecorator {
+
+        private final AtomicLong startedAt;
+
+        TimedSession(WebSocketSession session, AtomicLong startedAt) {
+            super(session);
+            this.startedAt = startedAt;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            startedAt.set(System.nanoTime());
+            try {
+                super.sendMessage(message);
+            } finally {
+                startedAt.set(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.p2pchat.websocket;
+
+import com.p2pchat.security.TokenAuthenticator;
+import com.p2pchat.security.UserPrincipal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authenticates the session at STOMP CONNECT from the JWT in the
+ * Authorization header and sets a UserPrincipal as the session user, so
+ * handlers get the userId and peerId from every frame without a lookup and
+ * user destinations resolve by peerId. CONNECTs without a valid token are
+ * refused.
+ */
+@Component
+public class StompAuthenticationInterceptor implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(StompAuthenticationInterceptor.class);
+
+    private final TokenAuthenticator tokenAuthenticator;
+
+    public StompAuthenticationInterceptor(TokenAuthenticator tokenAuthenticator) {
+        this.tokenAuthenticator = tokenAuthenticator;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+
+        UserPrincipal principal = tokenAuthenticator.authenticate(
+                accessor.getFirstNativeHeader(TokenAuthenticator.AUTHORIZATION_HEADER));
+        if (principal == null || principal.getPeerId() == null) {
+            log.warn("⚠️ Refused STOMP CONNECT without a valid token (session: {})", accessor.getSessionId());
+            // Answered with an ERROR frame and the session is closed
+            throw new MessageDeliveryException(message, "Missing or invalid token");
+        }
+
+        accessor.setUser(principal);
+        return message;
+    }
+
+    /**
+     * Get the user of a message's session, or null if the session did not
+     * authenticate
+     */
+    public static UserPrincipal getPrincipal(SimpMessageHeaderAccessor accessor) {
+        return accessor != null && accessor.getUser() instanceof UserPrincipal principal ? principal : null;
+    }
+
+    /**
+     * Get the userId of a message's session, or null if the session did not
+     * authenticate
+     */
+    public static Long getUserId(SimpMessageHeaderAccessor accessor) {
+        UserPrincipal principal = getPrincipal(accessor);
+        return principal != null ? principal.getUserId() : null;
+    }
+}
@@ -0,0 +1,20 @@
+-- Indexes for the request, friend and group membership access paths.
+--
+-- With spring.jpa.hibernate.ddl-auto=update Hibernate creates these from the
+-- @Index definitions on the entities; run this script by hand on databases
+-- managed with ddl-auto=validate or none.
+
+-- RequestRepository pending lists: to_user_id + status (+ request_type)
+CREATE INDEX idx_requests_to_status_type ON requests (to_user_id, status, request_type);
+
+-- RequestRepository.existsByFromUserIdAndToUserIdAndRequestType
+CREATE INDEX idx_requests_from_to_type ON requests (from_user_id, to_user_id, request_type);
+
+-- FriendRepository.findByFriendId; lookups by user_id use the unique (user_id, friend_id) key
+CREATE INDEX idx_friends_friend_id ON friends (friend_id);
+
+-- GroupRepository.findGroupsByUserId / findCoMemberIds join group_members on user_id
+CREATE INDEX idx_group_members_user_group ON `group_members` (user_id, group_id);
+
+-- GroupRepository.findByCreatorId
+CREATE INDEX idx_groups_creator_id ON `groups` (creator_id);
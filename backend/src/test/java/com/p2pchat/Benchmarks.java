@@ -0,0 +1,42 @@
+package com.p2pchat;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point shared by the JMH benchmarks in the test tree
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Run one benchmark class. Under exec:java the JVM's own class path is
+     * Maven's launcher, so the forked benchmark JVMs are handed the test
+     * class path instead.
+     */
+    public static void run(Class<?> benchmark) throws RunnerException {
+        if (benchmark.getClassLoader() instanceof URLClassLoader loader) {
+            List<String> entries = new ArrayList<>();
+            for (URL url : loader.getURLs()) {
+                try {
+                    entries.add(Paths.get(url.toURI()).toString());
+                } catch (URISyntaxException e) {
+                    throw new IllegalStateException("Unusable class path entry " + url, e);
+                }
+            }
+            System.setProperty("java.class.path", String.join(File.pathSeparator, entries));
+        }
+        new Runner(new OptionsBuilder().include(benchmark.getSimpleName()).build()).run();
+    }
+}
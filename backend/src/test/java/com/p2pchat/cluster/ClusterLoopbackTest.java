@@ -0,0 +1,245 @@
+package com.p2pchat.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p2pchat.dto.SignalingMessage;
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import com.p2pchat.entity.User;
+import com.p2pchat.entity.User.UserStatus;
+import com.p2pchat.offline.OfflineQueue;
+import com.p2pchat.repository.GroupRepository;
+import com.p2pchat.repository.UserRepository;
+import com.p2pchat.service.FriendGraph;
+import com.p2pchat.service.PeerDirectory;
+import com.p2pchat.service.PeerRegistry;
+import com.p2pchat.service.PresenceRouter;
+import com.p2pchat.service.PresenceService;
+import com.p2pchat.service.PresenceStore;
+import com.p2pchat.service.SignalingRelay;
+import com.p2pchat.service.UserService;
+import com.p2pchat.websocket.PeerSubscriptionRegistry;
+import com.p2pchat.websocket.SignalingMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two signaling nodes in one JVM, joined over the loopback transport and
+ * routing table: Alice is connected to node A, Bob to node B, and they are
+ * friends.
+ */
+class ClusterLoopbackTest {
+
+    private static final long ALICE = 1L;
+    private static final long BOB = 2L;
+
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void startNodes() {
+        nodeA = new Node("node-a");
+        nodeB = new Node("node-b");
+    }
+
+    @AfterEach
+    void stopNodes() {
+        nodeA.clusterNode.stop();
+        nodeB.clusterNode.stop();
+    }
+
+    @Test
+    void signalFromPeerOnNodeAReachesPeerOnNodeB() {
+        nodeA.presenceService.peerOnline(ALICE, "peer-alice", "session-a");
+        nodeB.presenceService.peerOnline(BOB, "peer-bob", "session-b");
+        nodeA.sent.clear();
+        nodeB.sent.clear();
+
+        SignalingMessage offer = new SignalingMessage(SignalType.OFFER, "peer-alice", "peer-bob",
+                Map.of("sdp", "v=0"), System.currentTimeMillis());
+
+        assertThat(nodeA.signalingRelay.sendToPeer(offer)).isTrue();
+        assertThat(nodeA.sent).isEmpty();
+        assertThat(nodeB.sent).singleElement().satisfies(message -> {
+            assertThat(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+                    .isEqualTo(PeerSubscriptionRegistry.PEER_DESTINATION_PREFIX + "peer-bob");
+            SignalingMessage delivered = (SignalingMessage) message.getPayload();
+            assertThat(delivered.getType()).isEqualTo(SignalType.OFFER);
+            assertThat(delivered.getFrom()).isEqualTo("peer-alice");
+            assertThat(delivered.getPayload()).isEqualTo(Map.of("sdp", "v=0"));
+        });
+    }
+
+    @Test
+    void signalForPeerOnNoNodeIsUndeliverable() {
+        nodeA.presenceService.peerOnline(ALICE, "peer-alice", "session-a");
+
+        SignalingMessage offer = new SignalingMessage(SignalType.OFFER, "peer-alice", "peer-bob",
+                Map.of(), System.currentTimeMillis());
+
+        assertThat(nodeA.signalingRelay.sendToPeer(offer)).isFalse();
+        assertThat(nodeB.sent).isEmpty();
+    }
+
+    @Test
+    void presenceIsVisibleAcrossNodes() {
+        nodeA.presenceService.peerOnline(ALICE, "peer-alice", "session-a");
+        nodeA.sent.clear();
+
+        nodeB.presenceService.peerOnline(BOB, "peer-bob", "session-b");
+
+        // Node B only tracks Bob, yet sees Alice online and tells her about Bob
+        assertThat(nodeB.presenceStore.getStatus(ALICE)).isEqualTo(UserStatus.ONLINE);
+        assertThat(nodeB.presenceStore.getOnlinePeerId(ALICE)).isEqualTo("peer-alice");
+        assertThat(signalsTo(nodeA, "peer-alice")).singleElement().satisfies(signal -> {
+            assertThat(signal.getType()).isEqualTo(SignalType.PEER_ONLINE);
+            assertThat(signal.getFrom()).isEqualTo("peer-bob");
+        });
+
+        nodeB.sent.clear();
+        nodeA.presenceService.sessionClosed("session-a");
+
+        assertThat(nodeB.presenceStore.getStatus(ALICE)).isEqualTo(UserStatus.OFFLINE);
+        assertThat(signalsTo(nodeB, "peer-bob")).singleElement().satisfies(signal -> {
+            assertThat(signal.getType()).isEqualTo(SignalType.PEER_OFFLINE);
+            assertThat(signal.getFrom()).isEqualTo("peer-alice");
+        });
+    }
+
+    @Test
+    void peerWithTabsOnTwoNodesStaysOnlineUntilBothClose() {
+        nodeA.presenceService.peerOnline(BOB, "peer-bob", "session-bob");
+        nodeA.presenceService.peerOnline(ALICE, "peer-alice", "session-a");
+        nodeA.sent.clear();
+
+        // Alice opens a second tab on node B and later closes it
+        nodeB.presenceService.peerOnline(ALICE, "peer-alice", "session-b");
+        assertThat(signalsTo(nodeA, "peer-bob")).isEmpty();
+        nodeB.presenceService.sessionClosed("session-b");
+
+        assertThat(signalsTo(nodeA, "peer-bob")).isEmpty();
+        assertThat(nodeB.presenceStore.getStatus(ALICE)).isEqualTo(UserStatus.ONLINE);
+        SignalingMessage offer = new SignalingMessage(SignalType.OFFER, "peer-carol", "peer-alice",
+                Map.of(), System.currentTimeMillis());
+        assertThat(nodeB.signalingRelay.sendToPeer(offer)).isTrue();
+        assertThat(signalsTo(nodeA, "peer-alice")).singleElement()
+                .satisfies(signal -> assertThat(signal.getType()).isEqualTo(SignalType.OFFER));
+
+        nodeA.presenceService.sessionClosed("session-a");
+
+        assertThat(signalsTo(nodeA, "peer-bob")).singleElement()
+                .satisfies(signal -> assertThat(signal.getType()).isEqualTo(SignalType.PEER_OFFLINE));
+        assertThat(nodeB.presenceStore.getStatus(ALICE)).isEqualTo(UserStatus.OFFLINE);
+    }
+
+    @Test
+    void signalReachesEveryNodeAPeerHasTabsOn() {
+        nodeA.presenceService.peerOnline(ALICE, "peer-alice", "session-a");
+        nodeB.presenceService.peerOnline(ALICE, "peer-alice", "session-b");
+        nodeA.sent.clear();
+        nodeB.sent.clear();
+
+        SignalingMessage offer = new SignalingMessage(SignalType.OFFER, "peer-bob", "peer-alice",
+                Map.of(), System.currentTimeMillis());
+
+        assertThat(nodeA.signalingRelay.sendToPeer(offer)).isTrue();
+        assertThat(signalsTo(nodeA, "peer-alice")).hasSize(1);
+        assertThat(signalsTo(nodeB, "peer-alice")).hasSize(1);
+    }
+
+    @Test
+    void forwardedSignalTheOwnerCannotDeliverIsReportedUndeliverable() {
+        nodeA.presenceService.peerOnline(ALICE, "peer-alice", "session-a");
+        // Alice's session on node A is gone, but node A has not released her yet
+        nodeA.peerRegistry.unregisterBySession("session-a");
+        nodeA.sent.clear();
+
+        SignalingMessage offer = new SignalingMessage(SignalType.OFFER, "peer-bob", "peer-alice",
+                Map.of(), System.currentTimeMillis());
+
+        // The sender hears the forward failed and can fall back to its offline queue
+        assertThat(nodeB.signalingRelay.sendToPeer(offer)).isFalse();
+        assertThat(nodeA.sent).isEmpty();
+    }
+
+    private static List<SignalingMessage> signalsTo(Node node, String peerId) {
+        String destination = PeerSubscriptionRegistry.PEER_DESTINATION_PREFIX + peerId;
+        return node.sent.stream()
+                .filter(message -> destination.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders())))
+                .map(message -> (SignalingMessage) message.getPayload())
+                .toList();
+    }
+
+    private static User user(long userId, String name) {
+        return new User(userId, name, "secret", name + "@example.com", null,
+                UserStatus.OFFLINE, "peer-" + name, null, null);
+    }
+
+    /**
+     * One node's presence and relay stack over mocked repositories. Frames
+     * for local sessions are captured instead of reaching a broker.
+     */
+    private static final class Node {
+        private final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+        private final ClusterNode clusterNode;
+        private final PeerRegistry peerRegistry;
+        private final SignalingRelay signalingRelay;
+        private final PresenceStore presenceStore;
+        private final PresenceService presenceService;
+
+        private Node(String nodeId) {
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            MessageChannel channel = (message, timeout) -> sent.add(message);
+
+            UserRepository userRepository = mock(UserRepository.class);
+            when(userRepository.findById(ALICE)).thenReturn(Optional.of(user(ALICE, "alice")));
+            when(userRepository.findById(BOB)).thenReturn(Optional.of(user(BOB, "bob")));
+            PeerDirectory peerDirectory = mock(PeerDirectory.class);
+            when(peerDirectory.getPeerId(ALICE)).thenReturn("peer-alice");
+            when(peerDirectory.getPeerId(BOB)).thenReturn("peer-bob");
+            FriendGraph friendGraph = mock(FriendGraph.class);
+            when(friendGraph.getFriendIds(ALICE)).thenReturn(List.of(BOB));
+            when(friendGraph.getFriendIds(BOB)).thenReturn(List.of(ALICE));
+
+            peerRegistry = new PeerRegistry();
+            clusterNode = new ClusterNode(new LoopbackRoutingTable(), new LoopbackNodeTransport(), true, nodeId);
+            signalingRelay = new SignalingRelay(channel, new SimpMessagingTemplate(channel), peerRegistry,
+                    new PeerSubscriptionRegistry(), new ObjectMapper(), clusterNode,
+                    new SignalingMetrics(meterRegistry, peerRegistry), false);
+            signalingRelay.joinCluster();
+
+            presenceStore = new PresenceStore(userRepository, mock(JdbcTemplate.class), clusterNode, peerDirectory);
+            UserService userService = mock(UserService.class);
+            doAnswer(invocation -> {
+                presenceStore.updateStatus(invocation.getArgument(0), invocation.getArgument(1));
+                return null;
+            }).when(userService).updateUserStatus(anyLong(), any());
+            OfflineQueue offlineQueue = mock(OfflineQueue.class);
+            when(offlineQueue.drain(anyString())).thenReturn(List.of());
+
+            PresenceRouter presenceRouter = new PresenceRouter(friendGraph, mock(GroupRepository.class),
+                    presenceStore, peerRegistry, signalingRelay, clusterNode, meterRegistry);
+            presenceService = new PresenceService(peerRegistry, userService, presenceRouter, clusterNode,
+                    offlineQueue, signalingRelay, meterRegistry, 0);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.p2pchat.controller;
+
+import ch.qos.logback.classic.Level;
+import com.p2pchat.Benchmarks;
+import com.p2pchat.dto.AuthRequest;
+import com.p2pchat.entity.User;
+import com.p2pchat.entity.User.UserStatus;
+import com.p2pchat.repository.UserRepository;
+import com.p2pchat.security.JwtUtil;
+import com.p2pchat.security.PasswordHashingPool;
+import com.p2pchat.service.PresenceStore;
+import com.p2pchat.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Successful logins of 100 users with BCrypt at its default cost, one
+ * client thread per core: AuthController with the hashing pool and the
+ * user lookup cache, against hashing on the request thread with a lookup
+ * per login. The user table answers after 0.5 ms, standing in for a
+ * database round trip. Divide the score by the core count for logins per
+ * second per core.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.p2pchat.controller.LoginBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class LoginBenchmark {
+
+    private static final int USERS = 100;
+    private static final long LOOKUP_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private UserRepository userRepository;
+    private PasswordEncoder passwordEncoder;
+    private JwtUtil jwtUtil;
+    private PasswordHashingPool passwordHashingPool;
+    private AuthController authController;
+
+    @Setup
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(PasswordHashingPool.class)).setLevel(Level.WARN);
+
+        passwordEncoder = new BCryptPasswordEncoder();
+        String encoded = passwordEncoder.encode("secret");
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername(anyString())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(LOOKUP_NANOS);
+            String name = invocation.getArgument(0);
+            return Optional.of(new User((long) name.hashCode(), name, encoded, name + "@example.com", null,
+                    UserStatus.OFFLINE, "peer-" + name, LocalDateTime.now(), null));
+        });
+
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "benchmark-secret-key-that-is-at-least-256-bits-long");
+        ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaxEntries", 10_000);
+        jwtUtil.init();
+
+        passwordHashingPool = new PasswordHashingPool(passwordEncoder, new SimpleMeterRegistry(), 0, 256, 1_000);
+        passwordHashingPool.calibrate();
+        UserService userService = new UserService(userRepository, passwordEncoder, mock(PresenceStore.class),
+                30_000, 10_000);
+        authController = new AuthController(userService, jwtUtil, passwordHashingPool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordHashingPool.shutdown();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> hashingPool() {
+        ResponseEntity<?> response = authController.login(new AuthRequest(randomUser(), "secret")).join();
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new IllegalStateException("Login refused: " + response.getBody());
+        }
+        return response;
+    }
+
+    /**
+     * The login before the hashing pool and the lookup cache
+     */
+    @Benchmark
+    public String requestThread() {
+        User user = userRepository.findByUsername(randomUser()).orElseThrow();
+        if (!passwordEncoder.matches("secret", user.getPassword())) {
+            throw new IllegalStateException("Login refused");
+        }
+        return jwtUtil.generateToken(user.getUsername(), user.getUserId(), user.getPeerId());
+    }
+
+    private static String randomUser() {
+        return "user-" + ThreadLocalRandom.current().nextInt(USERS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Benchmarks.run(LoginBenchmark.class);
+    }
+}
@@ -0,0 +1,77 @@
+package com.p2pchat.offline;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenedSegmentReplaysRecordsAndAppendsAfterThem() throws IOException {
+        LogSegment segment = LogSegment.create(directory, 3, 1024);
+        int first = segment.append((byte) 1, 100L, bytes("first"));
+        int second = segment.append((byte) 2, 300L, bytes("second"));
+        segment.flush();
+
+        LogSegment reopened = LogSegment.open(directory.resolve(LogSegment.fileName(3)), 3);
+
+        assertThat(records(reopened)).containsExactly("0:1:100:first", second + ":2:300:second");
+        assertThat(first).isZero();
+        assertThat(reopened.getMaxExpiresAt()).isEqualTo(300L);
+        int third = reopened.append((byte) 1, 200L, bytes("third"));
+        assertThat(third).isGreaterThan(second);
+        assertThat(new String(reopened.body(third), StandardCharsets.UTF_8)).isEqualTo("third");
+    }
+
+    @Test
+    void appendReportsAFullSegment() throws IOException {
+        int size = 64;
+        LogSegment segment = LogSegment.create(directory, 0, size);
+        byte[] body = new byte[size - LogSegment.RECORD_HEADER - Integer.BYTES];
+
+        assertThat(segment.append((byte) 1, 1L, body)).isZero();
+        assertThat(segment.append((byte) 1, 1L, new byte[0])).isEqualTo(-1);
+    }
+
+    @Test
+    void tornRecordReadsAsTheEndOfTheSegment() throws IOException {
+        LogSegment segment = LogSegment.create(directory, 0, 1024);
+        segment.append((byte) 1, 100L, bytes("complete"));
+        segment.flush();
+        Path file = directory.resolve(LogSegment.fileName(0));
+        int tornOffset = LogSegment.RECORD_HEADER + "complete".length();
+        // A record whose header and body landed but whose length did not
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes("partial")), tornOffset + LogSegment.RECORD_HEADER);
+        }
+
+        LogSegment reopened = LogSegment.open(file, 0);
+
+        assertThat(records(reopened)).containsExactly("0:1:100:complete");
+        assertThat(reopened.append((byte) 1, 100L, bytes("next"))).isEqualTo(tornOffset);
+    }
+
+    private static List<String> records(LogSegment segment) {
+        List<String> records = new ArrayList<>();
+        segment.forEach((offset, kind, expiresAt, body) ->
+                records.add(offset + ":" + kind + ":" + expiresAt + ":" + new String(body, StandardCharsets.UTF_8)));
+        return records;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,151 @@
+package com.p2pchat.offline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p2pchat.dto.SignalingMessage;
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import com.p2pchat.service.PeerDirectory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OfflineQueueTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private final PeerDirectory peerDirectory = mock(PeerDirectory.class);
+
+    @BeforeEach
+    void knownPeers() {
+        when(peerDirectory.getUserId(anyString())).thenAnswer(invocation ->
+                invocation.<String>getArgument(0).startsWith("peer-") ? 1L : null);
+    }
+
+    @Test
+    void drainHandsBackMessagesOldestFirstAndOnlyOnce() throws IOException {
+        OfflineQueue queue = open(60_000, 100);
+        queue.enqueue(text("peer-bob", "one"));
+        queue.enqueue(text("peer-bob", "two"));
+
+        assertThat(contents(queue.drain("peer-bob"))).containsExactly("one", "two");
+        assertThat(queue.drain("peer-bob")).isEmpty();
+    }
+
+    @Test
+    void replayHonoursDrainMarkers() throws IOException {
+        OfflineQueue queue = open(60_000, 100);
+        queue.enqueue(text("peer-bob", "before"));
+        queue.enqueue(text("peer-carol", "for carol"));
+        queue.drain("peer-bob");
+        queue.enqueue(text("peer-bob", "after"));
+        queue.close();
+
+        OfflineQueue reopened = open(60_000, 100);
+
+        assertThat(contents(reopened.drain("peer-bob"))).containsExactly("after");
+        assertThat(contents(reopened.drain("peer-carol"))).containsExactly("for carol");
+    }
+
+    @Test
+    void replaySpansSegments() throws IOException {
+        OfflineQueue queue = open(60_000, 1000);
+        for (int i = 0; i < 40; i++) {
+            queue.enqueue(text("peer-bob", "message " + i + " " + "x".repeat(200)));
+        }
+        queue.drain("peer-bob");
+        queue.enqueue(text("peer-bob", "last"));
+        queue.close();
+        assertThat(segmentFiles()).hasSizeGreaterThan(1);
+
+        assertThat(contents(open(60_000, 1000).drain("peer-bob"))).containsExactly("last");
+    }
+
+    @Test
+    void unknownRecipientsAndFullQueuesAreRefused() throws IOException {
+        OfflineQueue queue = open(60_000, 2);
+
+        assertThat(queue.enqueue(text("nobody", "hi"))).isFalse();
+        assertThat(queue.enqueue(text("peer-bob", "one"))).isTrue();
+        assertThat(queue.enqueue(text("peer-bob", "two"))).isTrue();
+        assertThat(queue.enqueue(text("peer-bob", "three"))).isFalse();
+        assertThat(queue.enqueue(new SignalingMessage(SignalType.TYPING, "peer-alice", "peer-bob", null, 0L)))
+                .isFalse();
+    }
+
+    @Test
+    void expiredSegmentsAreDeletedWithoutWaitingForOlderOnes() throws Exception {
+        // Signals live 50 ms, messages a minute
+        OfflineQueue queue = open(60_000, 1000, 50);
+        queue.enqueue(text("peer-bob", "kept"));
+        for (int i = 0; i < 40; i++) {
+            queue.enqueue(new SignalingMessage(SignalType.OFFER, "peer-alice", "peer-carol",
+                    Map.of("sdp", "x".repeat(200)), 0L));
+        }
+        int before = segmentFiles().size();
+        Thread.sleep(100);
+
+        queue.deleteExpiredSegments();
+
+        // The first segment still holds Bob's message; the offers after it are gone but the active segment stays
+        assertThat(segmentFiles()).hasSizeLessThan(before).contains(LogSegment.fileName(0));
+        assertThat(queue.drain("peer-carol")).isEmpty();
+        assertThat(contents(queue.drain("peer-bob"))).containsExactly("kept");
+    }
+
+    @Test
+    void fullLogDropsTheOldestSegment() throws IOException {
+        OfflineQueue queue = new OfflineQueue(new ObjectMapper(), peerDirectory, new SimpleMeterRegistry(), true,
+                directory.toString(), SEGMENT_SIZE, 60_000, 60_000, 1000, 2L * SEGMENT_SIZE);
+        queue.open();
+        for (int i = 0; i < 40; i++) {
+            queue.enqueue(text("peer-bob", "message " + i + " " + "x".repeat(200)));
+        }
+
+        assertThat(segmentFiles()).hasSize(2);
+        List<SignalingMessage> kept = queue.drain("peer-bob");
+        assertThat(kept).isNotEmpty().hasSizeLessThan(40);
+        assertThat(contents(kept)).last().asString().startsWith("message 39 ");
+    }
+
+    private OfflineQueue open(long messageTtlMillis, int maxPerPeer) throws IOException {
+        return open(messageTtlMillis, maxPerPeer, 60_000);
+    }
+
+    private OfflineQueue open(long messageTtlMillis, int maxPerPeer, long signalTtlMillis) throws IOException {
+        OfflineQueue queue = new OfflineQueue(new ObjectMapper(), peerDirectory, new SimpleMeterRegistry(), true,
+                directory.toString(), SEGMENT_SIZE, messageTtlMillis, signalTtlMillis, maxPerPeer, 1 << 20);
+        queue.open();
+        return queue;
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static SignalingMessage text(String to, String content) {
+        return new SignalingMessage(SignalType.MESSAGE, "peer-alice", to, Map.of("content", content), 0L);
+    }
+
+    private static List<String> contents(List<SignalingMessage> messages) {
+        return messages.stream()
+                .map(message -> (String) ((Map<?, ?>) message.getPayload()).get("content"))
+                .toList();
+    }
+}
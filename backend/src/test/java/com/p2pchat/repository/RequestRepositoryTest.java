@@ -0,0 +1,111 @@
+package com.p2pchat.repository;
+
+import com.p2pchat.dto.RequestDTO;
+import com.p2pchat.entity.Group;
+import com.p2pchat.entity.Request;
+import com.p2pchat.entity.Request.RequestStatus;
+import com.p2pchat.entity.Request.RequestType;
+import com.p2pchat.entity.User;
+import com.p2pchat.entity.User.UserStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The request list projections and the access-path indexes, against an
+ * embedded H2 schema generated from the entities
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class RequestRepositoryTest {
+
+    @Autowired
+    private RequestRepository requestRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GroupRepository groupRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User alice;
+    private User bob;
+    private User carol;
+    private Group group;
+
+    @BeforeEach
+    void seed() {
+        alice = userRepository.save(user("alice"));
+        bob = userRepository.save(user("bob"));
+        carol = userRepository.save(user("carol"));
+        group = groupRepository.save(new Group("hikers", alice.getUserId()));
+    }
+
+    @Test
+    void pendingListJoinsSenderAndGroupNamesNewestFirst() {
+        Request friend = request(alice, bob, RequestType.FRIEND, null, LocalDateTime.now().minusMinutes(2));
+        Request invite = request(carol, bob, RequestType.GROUP, group.getGroupId(), LocalDateTime.now().minusMinutes(1));
+        requestRepository.saveAll(List.of(friend, invite));
+
+        List<RequestDTO> pending = requestRepository.findViewsByToUserIdAndStatus(bob.getUserId(), RequestStatus.PENDING);
+
+        assertThat(pending).extracting(RequestDTO::getRequestId)
+                .containsExactly(invite.getRequestId(), friend.getRequestId());
+        assertThat(pending.get(0).getFromUsername()).isEqualTo("carol");
+        assertThat(pending.get(0).getTargetName()).isEqualTo("hikers");
+        assertThat(pending.get(1).getFromUsername()).isEqualTo("alice");
+        assertThat(pending.get(1).getTargetName()).isNull();
+    }
+
+    @Test
+    void pendingListFiltersByTypeAndStatus() {
+        Request friend = request(alice, bob, RequestType.FRIEND, null, LocalDateTime.now());
+        Request invite = request(carol, bob, RequestType.GROUP, group.getGroupId(), LocalDateTime.now());
+        Request answered = request(carol, bob, RequestType.FRIEND, null, LocalDateTime.now());
+        answered.setStatus(RequestStatus.ACCEPTED);
+        Request forSomeoneElse = request(bob, carol, RequestType.FRIEND, null, LocalDateTime.now());
+        requestRepository.saveAll(List.of(friend, invite, answered, forSomeoneElse));
+
+        List<RequestDTO> friendRequests = requestRepository.findViewsByToUserIdAndRequestTypeAndStatus(
+                bob.getUserId(), RequestType.FRIEND, RequestStatus.PENDING);
+
+        assertThat(friendRequests).extracting(RequestDTO::getRequestId).containsExactly(friend.getRequestId());
+        assertThat(requestRepository.existsByFromUserIdAndToUserIdAndRequestType(
+                alice.getUserId(), bob.getUserId(), RequestType.FRIEND)).isTrue();
+        assertThat(requestRepository.existsByFromUserIdAndToUserIdAndRequestType(
+                alice.getUserId(), bob.getUserId(), RequestType.GROUP)).isFalse();
+    }
+
+    @Test
+    void accessPathIndexesAreCreated() {
+        List<String> indexes = jdbcTemplate.queryForList(
+                "SELECT LOWER(INDEX_NAME) FROM INFORMATION_SCHEMA.INDEXES", String.class);
+
+        assertThat(indexes).contains(
+                "idx_requests_to_status_type",
+                "idx_requests_from_to_type",
+                "idx_friends_friend_id",
+                "idx_group_members_user_group",
+                "idx_groups_creator_id");
+    }
+
+    private static User user(String name) {
+        return new User(null, name, "secret", name + "@example.com", null,
+                UserStatus.OFFLINE, "peer-" + name, LocalDateTime.now(), null);
+    }
+
+    private static Request request(User from, User to, RequestType type, Long targetId, LocalDateTime createdAt) {
+        Request request = new Request(from.getUserId(), to.getUserId(), type, targetId);
+        request.setCreatedAt(createdAt);
+        return request;
+    }
+}
@@ -0,0 +1,105 @@
+package com.p2pchat.security;
+
+import com.p2pchat.Benchmarks;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifying a token presented again, as on every REST call and STOMP
+ * CONNECT of a session, for 1k users: JwtUtil with its claims cache,
+ * the prebuilt parser alone, and the key and parser rebuilt per call with
+ * the token parsed twice, as validateToken used to.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.p2pchat.security.JwtUtilBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-that-is-at-least-256-bits-long-for-hs256";
+    private static final int USERS = 1_000;
+
+    private final String[] tokens = new String[USERS];
+    private JwtUtil jwtUtil;
+    private JwtUtil uncachedJwtUtil;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = jwtUtil(10_000);
+        // With room for no entries every lookup misses, leaving the prebuilt key and parser
+        uncachedJwtUtil = jwtUtil(0);
+        for (int i = 0; i < USERS; i++) {
+            tokens[i] = jwtUtil.generateToken("user-" + i, (long) i, "peer-" + i);
+            jwtUtil.validateToken(tokens[i], "user-" + i);
+        }
+    }
+
+    @Benchmark
+    public boolean cachedClaims() {
+        int user = ThreadLocalRandom.current().nextInt(USERS);
+        return jwtUtil.validateToken(tokens[user], "user-" + user);
+    }
+
+    @Benchmark
+    public boolean prebuiltParser() {
+        int user = ThreadLocalRandom.current().nextInt(USERS);
+        return uncachedJwtUtil.validateToken(tokens[user], "user-" + user);
+    }
+
+    @Benchmark
+    public boolean parserPerCall() {
+        int user = ThreadLocalRandom.current().nextInt(USERS);
+        String token = tokens[user];
+        String username = parseRebuilt(token).getSubject();
+        Date expiration = parseRebuilt(token).getExpiration();
+        return username.equals("user-" + user) && !expiration.before(new Date());
+    }
+
+    /**
+     * extractClaims before the key and parser were kept
+     */
+    private static Claims parseRebuilt(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    private static JwtUtil jwtUtil(int cacheEntries) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaxEntries", cacheEntries);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Benchmarks.run(JwtUtilBenchmark.class);
+    }
+}
@@ -0,0 +1,92 @@
+package com.p2pchat.security;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "test-secret-key-that-is-at-least-256-bits-long-for-hs256";
+
+    @Test
+    void tokenCarriesTheUsersPrincipal() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000, 100);
+        String token = jwtUtil.generateToken("alice", 7L, "peer-alice");
+
+        UserPrincipal principal = jwtUtil.extractPrincipal(token);
+
+        assertThat(principal.getUserId()).isEqualTo(7L);
+        assertThat(principal.getUsername()).isEqualTo("alice");
+        assertThat(principal.getPeerId()).isEqualTo("peer-alice");
+        assertThat(jwtUtil.validateToken(token, "alice")).isTrue();
+        assertThat(jwtUtil.validateToken(token, "bob")).isFalse();
+    }
+
+    @Test
+    void tamperedTokenIsRejectedAndNotCached() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000, 100);
+        String token = jwtUtil.generateToken("alice", 7L, "peer-alice");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThatThrownBy(() -> jwtUtil.extractPrincipal(tampered)).isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> jwtUtil.extractPrincipal(tampered)).isInstanceOf(JwtException.class);
+        assertThat(cache(jwtUtil)).isEmpty();
+    }
+
+    @Test
+    void verifiedTokenIsServedFromTheCache() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000, 100);
+        String token = jwtUtil.generateToken("alice", 7L, "peer-alice");
+        jwtUtil.extractPrincipal(token);
+        Object cached = cache(jwtUtil).values().iterator().next();
+
+        jwtUtil.extractPrincipal(token);
+
+        assertThat(cache(jwtUtil)).hasSize(1);
+        assertThat(cache(jwtUtil).values().iterator().next()).isSameAs(cached);
+    }
+
+    @Test
+    void cachedTokenStopsWorkingWhenItExpires() throws InterruptedException {
+        // Expiry is kept to the second, so allow for rounding down
+        JwtUtil jwtUtil = jwtUtil(SECRET, 1_500, 100);
+        String token = jwtUtil.generateToken("alice", 7L, "peer-alice");
+        jwtUtil.extractPrincipal(token);
+        assertThat(cache(jwtUtil)).hasSize(1);
+
+        Thread.sleep(2_100);
+
+        assertThatThrownBy(() -> jwtUtil.extractPrincipal(token)).isInstanceOf(ExpiredJwtException.class);
+        assertThat(cache(jwtUtil)).isEmpty();
+    }
+
+    @Test
+    void fullCacheMakesRoomAndKeepsVerifying() {
+        JwtUtil jwtUtil = jwtUtil(SECRET, 60_000, 2);
+
+        for (long userId = 1; userId <= 5; userId++) {
+            String token = jwtUtil.generateToken("user" + userId, userId, "peer-" + userId);
+            assertThat(jwtUtil.extractUserId(token)).isEqualTo(userId);
+            assertThat(cache(jwtUtil)).hasSizeLessThanOrEqualTo(2);
+        }
+    }
+
+    private static JwtUtil jwtUtil(String secret, long expirationMillis, int cacheEntries) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", secret);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", expirationMillis);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaxEntries", cacheEntries);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+
+    private static Map<?, ?> cache(JwtUtil jwtUtil) {
+        return (Map<?, ?>) ReflectionTestUtils.getField(jwtUtil, "verifiedClaims");
+    }
+}
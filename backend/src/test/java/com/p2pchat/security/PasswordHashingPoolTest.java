@@ -0,0 +1,117 @@
+package com.p2pchat.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHashingPoolTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GatedEncoder encoder = new GatedEncoder();
+    private PasswordHashingPool pool;
+
+    @AfterEach
+    void shutdown() {
+        encoder.gate.countDown();
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void checksRunOnThePoolAndAnswerCorrectly() throws Exception {
+        pool = pool(2, 16, 1_000);
+        encoder.gate.countDown();
+
+        assertThat(pool.matches("secret", "{plain}secret").get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(pool.matches("wrong", "{plain}secret").get(5, TimeUnit.SECONDS)).isFalse();
+        assertThat(rejected()).isZero();
+    }
+
+    @Test
+    void checkIsTurnedAwayWhenTheQueuedWorkWouldOutlastTheWait() throws Exception {
+        // Calibration puts one hash at 20 ms or a little over, so a 59 ms wait fits two queued checks but not three
+        encoder.delayMillis = 20;
+        pool = pool(1, 16, 59);
+        CompletableFuture<Boolean> running = pool.matches("secret", "{plain}secret");
+        encoder.started.await(5, TimeUnit.SECONDS);
+
+        CompletableFuture<Boolean> first = pool.matches("secret", "{plain}secret");
+        CompletableFuture<Boolean> second = pool.matches("secret", "{plain}secret");
+
+        assertThatThrownBy(() -> pool.matches("secret", "{plain}secret"))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(rejected()).isEqualTo(1);
+
+        encoder.gate.countDown();
+        assertThat(CompletableFuture.allOf(running, first, second).thenApply(done -> true)
+                .get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void fullQueueIsRejectedAndCounted() throws Exception {
+        pool = pool(1, 1, 60_000);
+        pool.matches("secret", "{plain}secret");
+        encoder.started.await(5, TimeUnit.SECONDS);
+        pool.matches("secret", "{plain}secret");
+
+        assertThatThrownBy(() -> pool.matches("secret", "{plain}secret"))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(rejected()).isEqualTo(1);
+        assertThat(meterRegistry.get("auth.hashing.queue").gauge().value()).isEqualTo(1);
+    }
+
+    private PasswordHashingPool pool(int poolSize, int queueCapacity, long maxQueueWaitMillis) {
+        PasswordHashingPool hashingPool = new PasswordHashingPool(encoder, meterRegistry,
+                poolSize, queueCapacity, maxQueueWaitMillis);
+        hashingPool.calibrate();
+        // Calibration runs on the caller; from here on checks hold at the gate
+        encoder.calibrated = true;
+        return hashingPool;
+    }
+
+    private double rejected() {
+        return meterRegistry.counter("auth.hashing.rejected").count();
+    }
+
+    /**
+     * Compares in plain text. Calibration takes {@code delayMillis}; once
+     * calibrated, each check waits for the gate to open.
+     */
+    private static class GatedEncoder implements PasswordEncoder {
+
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile long delayMillis;
+        volatile boolean calibrated;
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return "{plain}" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            try {
+                if (calibrated) {
+                    started.countDown();
+                    gate.await();
+                } else {
+                    Thread.sleep(delayMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
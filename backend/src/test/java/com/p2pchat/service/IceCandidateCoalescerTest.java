@@ -0,0 +1,122 @@
+package com.p2pchat.service;
+
+import com.p2pchat.dto.SignalingMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IceCandidateCoalescerTest {
+
+    private final SignalingRelay signalingRelay = mock(SignalingRelay.class);
+    private IceCandidateCoalescer coalescer;
+
+    @BeforeEach
+    void peersAreOnline() {
+        when(signalingRelay.sendToPeer(any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void shutdown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    void candidatesWithinTheWindowGoOutAsOneBatch() {
+        coalescer = coalescer(50, 32, 1 << 20);
+
+        coalescer.add("peer-alice", "peer-bob", List.of(candidate(1)));
+        coalescer.add("peer-alice", "peer-bob", List.of(candidate(2), candidate(3)));
+
+        assertThat(sent(1, 2_000)).singleElement().satisfies(message -> {
+            assertThat(message.getType()).isEqualTo(SignalingMessage.SignalType.ICE_CANDIDATES);
+            assertThat((List<?>) message.getPayload()).hasSize(3);
+        });
+    }
+
+    @Test
+    void fullBatchIsRelayedBeforeTheWindowCloses() {
+        coalescer = coalescer(60_000, 3, 1 << 20);
+
+        coalescer.add("peer-alice", "peer-bob", List.of(candidate(1), candidate(2)));
+        verify(signalingRelay, never()).sendToPeer(any());
+        coalescer.add("peer-alice", "peer-bob", List.of(candidate(3)));
+
+        assertThat((List<?>) sent(1, 0).get(0).getPayload()).hasSize(3);
+    }
+
+    @Test
+    void largeBatchIsRelayedBeforeTheWindowCloses() {
+        coalescer = coalescer(60_000, 32, 300);
+
+        coalescer.add("peer-alice", "peer-bob", List.of(candidate(1)));
+        verify(signalingRelay, never()).sendToPeer(any());
+        coalescer.add("peer-alice", "peer-bob", List.of(Map.of("candidate", "x".repeat(300))));
+
+        assertThat((List<?>) sent(1, 0).get(0).getPayload()).hasSize(2);
+    }
+
+    @Test
+    void windowOfAFlushedBatchDoesNotCutTheNextOneShort() {
+        coalescer = coalescer(100, 2, 1 << 20);
+
+        coalescer.add("peer-alice", "peer-bob", List.of(candidate(1), candidate(2)));
+        coalescer.add("peer-alice", "peer-bob", List.of(candidate(3)));
+
+        // The first batch's timer fires while the second batch is open; the second waits for its own
+        verify(signalingRelay, after(50).times(1)).sendToPeer(any());
+        assertThat(sent(2, 2_000).get(1).getPayload()).asList().hasSize(1);
+    }
+
+    @Test
+    void slowDeliveryDoesNotHoldUpOtherPairs() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(signalingRelay.sendToPeer(argThat(message -> message.getTo().equals("peer-bob")))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+        coalescer = coalescer(20, 32, 1 << 20);
+
+        try {
+            coalescer.add("peer-alice", "peer-bob", List.of(candidate(1)));
+            coalescer.add("peer-carol", "peer-dave", List.of(candidate(2)));
+
+            // Bob's batch is stuck in its send; Dave's window closes and goes out regardless
+            verify(signalingRelay, timeout(2_000)).sendToPeer(argThat(message -> message.getTo().equals("peer-dave")));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private IceCandidateCoalescer coalescer(long windowMillis, int maxCandidates, int maxBytes) {
+        return new IceCandidateCoalescer(signalingRelay, windowMillis, maxCandidates, maxBytes, 2);
+    }
+
+    private List<SignalingMessage> sent(int count, long waitMillis) {
+        ArgumentCaptor<SignalingMessage> captor = ArgumentCaptor.forClass(SignalingMessage.class);
+        verify(signalingRelay, waitMillis > 0 ? timeout(waitMillis).times(count) : times(count))
+                .sendToPeer(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static Map<String, Object> candidate(int index) {
+        return Map.of("candidate", "candidate:" + index + " 1 udp 2122260223 192.168.1.2 5000" + index + " typ host",
+                "sdpMid", "0", "sdpMLineIndex", 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.p2pchat.service;
+
+import com.p2pchat.dto.MessageDTO;
+import com.p2pchat.entity.ChatMessage;
+import com.p2pchat.repository.ChatMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageServiceTest {
+
+    private static final String KEY = MessageService.directKey(1L, 2L);
+
+    private final ChatMessageRepository messageRepository = mock(ChatMessageRepository.class);
+    private final MessageService messageService =
+            new MessageService(messageRepository, mock(GroupMembershipCache.class), 0, 2);
+
+    @BeforeEach
+    void repositoryStoresWhatItIsGiven() {
+        when(messageRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void idleSequenceIsDroppedAndReseededFromTheTable() {
+        when(messageRepository.findMaxSeq(KEY)).thenReturn(null, 7L);
+
+        assertThat(append("first").getSeq()).isEqualTo(1L);
+        messageService.evictIdleSequences();
+        assertThat(messageService.getSequenceCount()).isZero();
+
+        // Another node stored up to 7 in the meantime
+        assertThat(append("second").getSeq()).isEqualTo(8L);
+        verify(messageRepository, times(2)).findMaxSeq(KEY);
+    }
+
+    @Test
+    void blankContentIsRejected() {
+        assertThatThrownBy(() -> append("  ")).isInstanceOf(IllegalArgumentException.class);
+        verify(messageRepository, never()).save(any());
+    }
+
+    @Test
+    void syncOfTooManyConversationsIsRejected() {
+        Map<String, Long> cursors = Map.of(KEY, 0L, MessageService.directKey(1L, 3L), 0L,
+                MessageService.directKey(1L, 4L), 0L);
+
+        assertThatThrownBy(() -> messageService.syncAll(1L, cursors, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private MessageDTO append(String content) {
+        return messageService.append(KEY, 1L, content, stored -> { });
+    }
+}
@@ -0,0 +1,137 @@
+package com.p2pchat.service;
+
+import ch.qos.logback.classic.Level;
+import com.p2pchat.Benchmarks;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.RunnerException;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PeerRegistry against the two-map registry it replaced, at 100k online
+ * peers under a 90/10 mix of lookups and reconnects.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.p2pchat.service.PeerRegistryBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class PeerRegistryBenchmark {
+
+    private static final int PEERS = 100_000;
+
+    private final String[] peerIds = new String[PEERS];
+    private final AtomicLong sessions = new AtomicLong();
+    private PeerRegistry registry;
+    private TwoMapPeerRegistry twoMapRegistry;
+
+    @Setup
+    public void setUp() {
+        // Registering logs at INFO; keep it out of the measurement
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(PeerRegistry.class)).setLevel(Level.WARN);
+
+        registry = new PeerRegistry();
+        twoMapRegistry = new TwoMapPeerRegistry();
+        for (int i = 0; i < PEERS; i++) {
+            peerIds[i] = "peer-" + i;
+            registry.registerPeer(i, peerIds[i], "session-" + i);
+            twoMapRegistry.registerPeer(peerIds[i], "session-" + i);
+        }
+    }
+
+    @Benchmark
+    public void peerRegistry(Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = random.nextInt(PEERS);
+        String peerId = peerIds[user];
+        if (random.nextInt(10) == 0) {
+            // A tab reconnecting: its old session goes, a new one registers
+            String sessionId = registry.getSessionId(peerId);
+            if (sessionId != null) {
+                registry.unregisterBySession(sessionId);
+            }
+            registry.registerPeer(user, peerId, "session-" + sessions.incrementAndGet());
+        } else {
+            String sessionId = registry.getSessionId(peerId);
+            blackhole.consume(sessionId != null ? registry.getPeerId(sessionId) : null);
+            blackhole.consume(registry.getPeerByUser(user));
+        }
+    }
+
+    @Benchmark
+    public void twoMapRegistry(Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = random.nextInt(PEERS);
+        String peerId = peerIds[user];
+        if (random.nextInt(10) == 0) {
+            String sessionId = twoMapRegistry.getSessionId(peerId);
+            if (sessionId != null) {
+                twoMapRegistry.unregisterBySession(sessionId);
+            }
+            twoMapRegistry.registerPeer(peerId, "session-" + sessions.incrementAndGet());
+        } else {
+            String sessionId = twoMapRegistry.getSessionId(peerId);
+            blackhole.consume(sessionId != null ? twoMapRegistry.getPeerId(sessionId) : null);
+            // It had no index by user; a peer lookup is the closest equivalent
+            blackhole.consume(twoMapRegistry.isPeerOnline(peerId));
+        }
+    }
+
+    /**
+     * The registry before the per-user redesign, without its logging
+     */
+    static final class TwoMapPeerRegistry {
+        private final Map<String, String> onlinePeers = new ConcurrentHashMap<>();
+        private final Map<String, String> sessionToPeer = new ConcurrentHashMap<>();
+
+        void registerPeer(String peerId, String sessionId) {
+            onlinePeers.put(peerId, sessionId);
+            sessionToPeer.put(sessionId, peerId);
+        }
+
+        String unregisterBySession(String sessionId) {
+            String peerId = sessionToPeer.remove(sessionId);
+            if (peerId != null) {
+                onlinePeers.remove(peerId);
+            }
+            return peerId;
+        }
+
+        String getSessionId(String peerId) {
+            return onlinePeers.get(peerId);
+        }
+
+        String getPeerId(String sessionId) {
+            return sessionToPeer.get(sessionId);
+        }
+
+        boolean isPeerOnline(String peerId) {
+            return onlinePeers.containsKey(peerId);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Benchmarks.run(PeerRegistryBenchmark.class);
+    }
+}
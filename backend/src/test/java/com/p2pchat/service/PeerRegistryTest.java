@@ -0,0 +1,111 @@
+package com.p2pchat.service;
+
+import com.p2pchat.service.PeerRegistry.Registration;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PeerRegistryTest {
+
+    private final PeerRegistry registry = new PeerRegistry();
+
+    @Test
+    void registeredPeerIsFoundByEveryKey() {
+        assertThat(registry.registerPeer(7L, "peer-7", "session-1")).isEqualTo(Registration.FIRST_SESSION);
+
+        assertThat(registry.getPeer("peer-7").getUserId()).isEqualTo(7L);
+        assertThat(registry.getPeerByUser(7L).getPeerId()).isEqualTo("peer-7");
+        assertThat(registry.getPeerId("session-1")).isEqualTo("peer-7");
+        assertThat(registry.getSessionId("peer-7")).isEqualTo("session-1");
+        assertThat(registry.isPeerOnline("peer-7")).isTrue();
+    }
+
+    @Test
+    void secondTabAddsASessionInsteadOfReplacingTheFirst() {
+        registry.registerPeer(7L, "peer-7", "session-1");
+
+        assertThat(registry.registerPeer(7L, "peer-7", "session-2")).isEqualTo(Registration.ADDED_SESSION);
+        assertThat(registry.getPeer("peer-7").sessionCount()).isEqualTo(2);
+        assertThat(registry.getSessionId("peer-7")).isEqualTo("session-2");
+
+        assertThat(registry.unregisterBySession("session-2")).isEqualTo("peer-7");
+        assertThat(registry.isPeerOnline("peer-7")).isTrue();
+        assertThat(registry.getSessionId("peer-7")).isEqualTo("session-1");
+
+        assertThat(registry.unregisterBySession("session-1")).isEqualTo("peer-7");
+        assertThat(registry.isPeerOnline("peer-7")).isFalse();
+        assertThat(registry.getPeerByUser(7L)).isNull();
+        assertThat(registry.getSessionCount()).isZero();
+    }
+
+    @Test
+    void peerIdOfAnotherUserIsRejected() {
+        registry.registerPeer(7L, "peer-7", "session-1");
+
+        assertThat(registry.registerPeer(8L, "peer-7", "session-2")).isEqualTo(Registration.REJECTED);
+        assertThat(registry.getPeer("peer-7").getUserId()).isEqualTo(7L);
+        assertThat(registry.getPeerId("session-2")).isNull();
+        assertThat(registry.getPeerByUser(8L)).isNull();
+    }
+
+    @Test
+    void sessionRegisteringUnderAnotherPeerIdLeavesTheOldOne() {
+        registry.registerPeer(7L, "peer-old", "session-1");
+
+        registry.registerPeer(7L, "peer-new", "session-1");
+
+        assertThat(registry.isPeerOnline("peer-old")).isFalse();
+        assertThat(registry.getPeerId("session-1")).isEqualTo("peer-new");
+        assertThat(registry.getPeerByUser(7L).getPeerId()).isEqualTo("peer-new");
+    }
+
+    @Test
+    void unregisterPeerDropsAllOfItsSessions() {
+        registry.registerPeer(7L, "peer-7", "session-1");
+        registry.registerPeer(7L, "peer-7", "session-2");
+
+        registry.unregisterPeer("peer-7");
+
+        assertThat(registry.isPeerOnline("peer-7")).isFalse();
+        assertThat(registry.getPeerId("session-1")).isNull();
+        assertThat(registry.getPeerId("session-2")).isNull();
+        assertThat(registry.getPeerByUser(7L)).isNull();
+    }
+
+    @Test
+    void userLookupsSurviveDeletesAndReinsertsAcrossProbeChains() {
+        // Dozens of users per shard force resizes, probe runs and
+        // backward-shift deletes in the middle of them
+        Random random = new Random(42);
+        Map<Long, String> online = new HashMap<>();
+        int users = 5_000;
+
+        for (int round = 0; round < 50_000; round++) {
+            long userId = random.nextInt(users) + 1;
+            String peerId = "peer-" + userId;
+            if (online.containsKey(userId) && random.nextBoolean()) {
+                registry.unregisterBySession(online.remove(userId));
+            } else if (!online.containsKey(userId)) {
+                String sessionId = peerId + "-" + round;
+                registry.registerPeer(userId, peerId, sessionId);
+                online.put(userId, sessionId);
+            }
+        }
+
+        for (long userId = 1; userId <= users; userId++) {
+            PeerRegistry.Peer peer = registry.getPeerByUser(userId);
+            if (online.containsKey(userId)) {
+                assertThat(peer).as("user %d", userId).isNotNull();
+                assertThat(peer.getPeerId()).isEqualTo("peer-" + userId);
+            } else {
+                assertThat(peer).as("user %d", userId).isNull();
+            }
+        }
+        assertThat(registry.getPeerCount()).isEqualTo(online.size());
+        assertThat(registry.getSessionCount()).isEqualTo(online.size());
+    }
+}
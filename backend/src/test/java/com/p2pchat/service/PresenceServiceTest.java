@@ -0,0 +1,109 @@
+package com.p2pchat.service;
+
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import com.p2pchat.entity.User.UserStatus;
+import com.p2pchat.offline.OfflineQueue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PresenceServiceTest {
+
+    private static final long ALICE = 1L;
+    private static final long GRACE_MILLIS = 50;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserService userService = mock(UserService.class);
+    private final PresenceRouter presenceRouter = mock(PresenceRouter.class);
+    private final OfflineQueue offlineQueue = mock(OfflineQueue.class);
+
+    // Status writes and presence frames, in the order they happened
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final CountDownLatch offlineWriting = new CountDownLatch(1);
+    private volatile long offlineWriteMillis;
+
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void wire() {
+        when(offlineQueue.drain(anyString())).thenReturn(List.of());
+        doAnswer(invocation -> {
+            UserStatus status = invocation.getArgument(1);
+            if (status == UserStatus.OFFLINE) {
+                offlineWriting.countDown();
+                Thread.sleep(offlineWriteMillis);
+            }
+            events.add("status " + status);
+            return null;
+        }).when(userService).updateUserStatus(anyLong(), any());
+        doAnswer(invocation -> {
+            events.add("publish " + invocation.getArgument(2));
+            return null;
+        }).when(presenceRouter).publish(anyLong(), anyString(), any());
+
+        presenceService = new PresenceService(new PeerRegistry(), userService, presenceRouter,
+                mock(ClusterNode.class), offlineQueue, mock(SignalingRelay.class), meterRegistry, GRACE_MILLIS);
+    }
+
+    @AfterEach
+    void shutdown() {
+        presenceService.shutdown();
+    }
+
+    @Test
+    void reconnectWithinTheGracePeriodIsSilent() throws InterruptedException {
+        presenceService.peerOnline(ALICE, "peer-alice", "session-1");
+        events.clear();
+
+        presenceService.sessionClosed("session-1");
+        presenceService.peerOnline(ALICE, "peer-alice", "session-2");
+        Thread.sleep(GRACE_MILLIS * 3);
+
+        assertThat(events).isEmpty();
+        assertThat(meterRegistry.counter("presence.flaps.suppressed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void peerGoesOfflineOnceTheGracePeriodRunsOut() throws InterruptedException {
+        presenceService.peerOnline(ALICE, "peer-alice", "session-1");
+        events.clear();
+
+        presenceService.sessionClosed("session-1");
+
+        assertThat(offlineWriting.await(2, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(GRACE_MILLIS);
+        assertThat(events).containsExactly("status OFFLINE", "publish PEER_OFFLINE");
+    }
+
+    @Test
+    void reconnectDuringTheOfflineCommitIsAnnouncedAfterIt() throws InterruptedException {
+        presenceService.peerOnline(ALICE, "peer-alice", "session-1");
+        events.clear();
+        // Hold the expiry inside its status write while the peer reconnects
+        offlineWriteMillis = 200;
+
+        presenceService.sessionClosed("session-1");
+        assertThat(offlineWriting.await(2, TimeUnit.SECONDS)).isTrue();
+        presenceService.peerOnline(ALICE, "peer-alice", "session-2");
+
+        // The peer is connected, so the last word has to be ONLINE
+        assertThat(events).containsExactly(
+                "status OFFLINE", "publish PEER_OFFLINE", "status ONLINE", "publish PEER_ONLINE");
+        assertThat(meterRegistry.counter("presence.flaps.suppressed").count()).isZero();
+    }
+}
@@ -0,0 +1,65 @@
+package com.p2pchat.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.p2pchat.dto.SignalingMessage;
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import com.p2pchat.service.SignalingRelay.SharedFrame;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SharedFrameTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void addressedFrameMatchesSerializingTheAddressedMessage() throws IOException {
+        Map<String, Object> payload = Map.of("candidate", "candidate:1 1 udp 2122260223 10.0.0.1 54321 typ host");
+
+        assertSplicesLikeSerializing(objectMapper, payload, "peer-bob");
+    }
+
+    @Test
+    void payloadWithItsOwnToFieldIsLeftAlone() throws IOException {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("to", null);
+        payload.put("nested", Map.of("to", "peer-carol"));
+        payload.put("text", "\"to\":null");
+
+        assertSplicesLikeSerializing(objectMapper, payload, "peer-bob");
+    }
+
+    @Test
+    void splicingDoesNotDependOnPropertyOrder() throws IOException {
+        // Sorted, "payload" is written before "to"
+        ObjectMapper sorted = JsonMapper.builder().enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY).build();
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("to", null);
+
+        assertSplicesLikeSerializing(sorted, payload, "peer-bob");
+    }
+
+    @Test
+    void recipientIsEscaped() throws IOException {
+        assertSplicesLikeSerializing(objectMapper, List.of(1, 2), "peer \"quoted\" \\ é");
+    }
+
+    private static void assertSplicesLikeSerializing(ObjectMapper objectMapper, Object payload, String peerId)
+            throws IOException {
+        SharedFrame frame = SharedFrame.of(objectMapper,
+                new SignalingMessage(SignalType.ICE_CANDIDATE, "peer-alice", null, payload, 42L));
+
+        JsonNode spliced = objectMapper.readTree(frame.addressedTo(peerId));
+        JsonNode expected = objectMapper.readTree(objectMapper.writeValueAsBytes(
+                new SignalingMessage(SignalType.ICE_CANDIDATE, "peer-alice", peerId, payload, 42L)));
+        assertThat(spliced).isEqualTo(expected);
+    }
+}
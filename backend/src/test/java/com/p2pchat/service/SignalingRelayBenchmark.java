@@ -0,0 +1,150 @@
+package com.p2pchat.service;
+
+import ch.qos.logback.classic.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p2pchat.Benchmarks;
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.cluster.LoopbackNodeTransport;
+import com.p2pchat.cluster.LoopbackRoutingTable;
+import com.p2pchat.dto.SignalingMessage;
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import com.p2pchat.security.UserPrincipal;
+import com.p2pchat.websocket.PeerSubscriptionRegistry;
+import com.p2pchat.websocket.SignalingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.RunnerException;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Point-to-point delivery of ICE candidates to one of 10k connected peers:
+ * addressed straight to the target session against the simple broker's
+ * topic, which matches the destination against every subscription.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.p2pchat.service.SignalingRelayBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class SignalingRelayBenchmark {
+
+    private static final int PEERS = 10_000;
+
+    private final SignalingMessage[] candidates = new SignalingMessage[PEERS];
+    // Frames that reached a session, standing in for the WebSocket writes
+    private final LongAdder framesOut = new LongAdder();
+    private SimpleBrokerMessageHandler broker;
+    private SignalingRelay directRelay;
+    private SignalingRelay topicRelay;
+
+    @Setup
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(PeerRegistry.class)).setLevel(Level.WARN);
+        // The broker logs its lifecycle through Spring's messaging log category
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("org.springframework.web.SimpLogging"))
+                .setLevel(Level.WARN);
+
+        MessageChannel clientOutboundChannel = (message, timeout) -> {
+            framesOut.increment();
+            return true;
+        };
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(), clientOutboundChannel,
+                brokerChannel, List.of("/topic"));
+        broker.start();
+
+        PeerRegistry peerRegistry = new PeerRegistry();
+        PeerSubscriptionRegistry subscriptionRegistry = new PeerSubscriptionRegistry();
+        for (int i = 0; i < PEERS; i++) {
+            String peerId = "peer-" + i;
+            String sessionId = "session-" + i;
+            peerRegistry.registerPeer(i, peerId, sessionId);
+            StompHeaderAccessor subscribe = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+            subscribe.setSessionId(sessionId);
+            subscribe.setSubscriptionId("sub-0");
+            subscribe.setDestination(PeerSubscriptionRegistry.PEER_DESTINATION_PREFIX + peerId);
+            subscribe.setUser(new UserPrincipal((long) i, "user-" + i, peerId));
+            subscriptionRegistry.preSend(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()), null);
+            // The broker only writes to sessions it saw connect
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId(sessionId);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+            SimpMessageHeaderAccessor brokerSubscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            brokerSubscribe.setSessionId(sessionId);
+            brokerSubscribe.setSubscriptionId("sub-0");
+            brokerSubscribe.setDestination(PeerSubscriptionRegistry.PEER_DESTINATION_PREFIX + peerId);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], brokerSubscribe.getMessageHeaders()));
+
+            candidates[i] = new SignalingMessage(SignalType.ICE_CANDIDATE, "peer-caller", peerId,
+                    Map.of("candidate", "candidate:1 1 udp 2122260223 192.168.1.2 50000 typ host",
+                            "sdpMid", "0", "sdpMLineIndex", 0),
+                    System.currentTimeMillis());
+        }
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SignalingMetrics signalingMetrics = new SignalingMetrics(meterRegistry, peerRegistry);
+        ClusterNode standalone = new ClusterNode(new LoopbackRoutingTable(), new LoopbackNodeTransport(),
+                false, "benchmark");
+        ObjectMapper objectMapper = new ObjectMapper();
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+        directRelay = new SignalingRelay(clientOutboundChannel, messagingTemplate, peerRegistry,
+                subscriptionRegistry, objectMapper, standalone, signalingMetrics, true);
+        topicRelay = new SignalingRelay(clientOutboundChannel, messagingTemplate, peerRegistry,
+                subscriptionRegistry, objectMapper, standalone, signalingMetrics, false);
+        // Leave out the connect acknowledgements
+        framesOut.reset();
+    }
+
+    @TearDown
+    public void tearDown() {
+        broker.stop();
+        if (framesOut.sum() == 0) {
+            throw new IllegalStateException("No frame reached a session");
+        }
+    }
+
+    @Benchmark
+    public boolean directDelivery() {
+        return directRelay.sendToPeer(candidates[ThreadLocalRandom.current().nextInt(PEERS)]);
+    }
+
+    @Benchmark
+    public boolean brokerTopic() {
+        return topicRelay.sendToPeer(candidates[ThreadLocalRandom.current().nextInt(PEERS)]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Benchmarks.run(SignalingRelayBenchmark.class);
+    }
+}
@@ -0,0 +1,74 @@
+package com.p2pchat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.p2pchat.cluster.ClusterNode;
+import com.p2pchat.dto.SignalingMessage;
+import com.p2pchat.dto.SignalingMessage.SignalType;
+import com.p2pchat.websocket.PeerSubscriptionRegistry;
+import com.p2pchat.websocket.PeerSubscriptionRegistry.PeerSubscription;
+import com.p2pchat.websocket.SignalingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SignalingRelayTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Message<?>> sent = new CopyOnWriteArrayList<>();
+    private final PeerRegistry peerRegistry = new PeerRegistry();
+    private final PeerSubscriptionRegistry subscriptionRegistry = mock(PeerSubscriptionRegistry.class);
+
+    @BeforeEach
+    void bobIsSubscribed() {
+        peerRegistry.registerPeer(2L, "peer-bob", "session-bob");
+        when(subscriptionRegistry.getSubscription("session-bob", "peer-bob"))
+                .thenReturn(new PeerSubscription("peer-bob", "sub-0", "/topic/peer/peer-bob"));
+    }
+
+    @Test
+    void messageIsSentStraightToTheSubscribedSession() {
+        SignalingRelay relay = relay(new ObjectMapper());
+
+        assertThat(relay.sendToPeer(offer())).isTrue();
+        assertThat(sent).hasSize(1);
+    }
+
+    @Test
+    void messageThatCannotBeSerializedIsReportedUndeliverable() throws JsonProcessingException {
+        ObjectMapper objectMapper = mock(ObjectMapper.class);
+        when(objectMapper.writeValueAsBytes(any())).thenThrow(new JsonProcessingException("broken") { });
+        SignalingRelay relay = relay(objectMapper);
+
+        // Callers fall back to the offline queue only when told the offer did not go out
+        assertThat(relay.sendToPeer(offer())).isFalse();
+        assertThat(sent).isEmpty();
+        assertThat(meterRegistry.counter("signaling.messages.undeliverable",
+                "type", "OFFER", "reason", "SERIALIZATION").count()).isEqualTo(1);
+        assertThat(meterRegistry.find("signaling.messages.undeliverable").tag("reason", "PEER_OFFLINE").counter())
+                .isNull();
+    }
+
+    private SignalingRelay relay(ObjectMapper objectMapper) {
+        MessageChannel channel = (message, timeout) -> sent.add(message);
+        return new SignalingRelay(channel, new SimpMessagingTemplate(channel), peerRegistry, subscriptionRegistry,
+                objectMapper, mock(ClusterNode.class), new SignalingMetrics(meterRegistry, peerRegistry), true);
+    }
+
+    private static SignalingMessage offer() {
+        return new SignalingMessage(SignalType.OFFER, "peer-alice", "peer-bob", Map.of("sdp", "v=0"),
+                System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,92 @@
+package com.p2pchat.service;
+
+import com.p2pchat.entity.User;
+import com.p2pchat.entity.User.UserStatus;
+import com.p2pchat.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    @Test
+    void repeatedLookupIsServedFromTheCache() {
+        User alice = user("alice");
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+        UserService userService = userService(60_000, 100);
+
+        assertThat(userService.findByUsername("alice")).isSameAs(alice);
+        assertThat(userService.findByUsername("alice")).isSameAs(alice);
+
+        verify(userRepository, times(1)).findByUsername("alice");
+    }
+
+    @Test
+    void missIsNotCachedSoANewUserIsFoundAtOnce() {
+        User bob = user("bob");
+        when(userRepository.findByUsername("bob")).thenReturn(Optional.empty(), Optional.of(bob));
+        UserService userService = userService(60_000, 100);
+
+        assertThatThrownBy(() -> userService.findByUsername("bob")).hasMessage("User not found");
+        assertThat(userService.findByUsername("bob")).isSameAs(bob);
+    }
+
+    @Test
+    void staleEntryIsLookedUpAgain() throws InterruptedException {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user("alice")));
+        UserService userService = userService(20, 100);
+
+        userService.findByUsername("alice");
+        Thread.sleep(40);
+        userService.findByUsername("alice");
+
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    void zeroTtlTurnsTheCacheOff() {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user("alice")));
+        UserService userService = userService(0, 100);
+
+        userService.findByUsername("alice");
+        userService.findByUsername("alice");
+
+        verify(userRepository, times(2)).findByUsername("alice");
+    }
+
+    @Test
+    void fullCacheMakesRoomAndKeepsAnswering() {
+        for (String name : new String[] {"a", "b", "c", "d"}) {
+            when(userRepository.findByUsername(name)).thenReturn(Optional.of(user(name)));
+        }
+        UserService userService = userService(60_000, 2);
+
+        for (String name : new String[] {"a", "b", "c", "d"}) {
+            assertThat(userService.findByUsername(name).getUsername()).isEqualTo(name);
+        }
+        // The last name looked up is still cached
+        userService.findByUsername("d");
+        verify(userRepository, times(1)).findByUsername("d");
+    }
+
+    private UserService userService(long ttlMillis, int maxEntries) {
+        return new UserService(userRepository, mock(PasswordEncoder.class), mock(PresenceStore.class),
+                ttlMillis, maxEntries);
+    }
+
+    private static User user(String name) {
+        return new User(null, name, "secret", name + "@example.com", null,
+                UserStatus.OFFLINE, "peer-" + name, LocalDateTime.now(), null);
+    }
+}
@@ -0,0 +1,98 @@
+package com.p2pchat.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SignalRateLimiterTest {
+
+    // Typing: 2 per second, so one token every 500 ms, and a burst of 5
+    private static final long TYPING_REFILL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int TYPING_BURST = 5;
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SignalRateLimiter limiter = new SignalRateLimiter(meterRegistry, clock::get, true,
+            50, 200, 5, 20, 2, TYPING_BURST, 0.2, 3, 20, 50);
+
+    @Test
+    void fullBucketAdmitsItsBurstThenThrottles() {
+        assertThat(admitted("session-1", "/app/signal/typing", 10)).isEqualTo(TYPING_BURST);
+        assertThat(meterRegistry.counter("signaling.frames.throttled", "category", "TYPING").count())
+                .isEqualTo(10 - TYPING_BURST);
+    }
+
+    @Test
+    void emptyBucketRefillsExactlyAtTheRefillInterval() {
+        admitted("session-1", "/app/signal/typing", TYPING_BURST);
+
+        clock.addAndGet(TYPING_REFILL_NANOS - 1);
+        assertThat(send("session-1", "/app/signal/typing")).isNull();
+
+        clock.addAndGet(1);
+        assertThat(send("session-1", "/app/signal/typing")).isNotNull();
+        assertThat(send("session-1", "/app/signal/typing")).isNull();
+    }
+
+    @Test
+    void idleBucketHoldsNoMoreThanItsBurst() {
+        admitted("session-1", "/app/signal/typing", TYPING_BURST);
+
+        clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+        assertThat(admitted("session-1", "/app/signal/typing", 10)).isEqualTo(TYPING_BURST);
+    }
+
+    @Test
+    void kindsAndSessionsHaveSeparateBudgets() {
+        admitted("session-1", "/app/signal/typing", TYPING_BURST);
+
+        assertThat(send("session-1", "/app/signal/ice-candidate")).isNotNull();
+        assertThat(send("session-1", "/app/signal/group-message")).isNotNull();
+        assertThat(send("session-2", "/app/signal/typing")).isNotNull();
+    }
+
+    @Test
+    void disconnectForgetsTheSessionsBuckets() {
+        admitted("session-1", "/app/signal/typing", TYPING_BURST);
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        accessor.setSessionId("session-1");
+        limiter.preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), null);
+
+        assertThat(send("session-1", "/app/signal/typing")).isNotNull();
+    }
+
+    @Test
+    void destinationsOutsideSignalingAreNotLimited() {
+        assertThat(admitted("session-1", "/app/other", 100)).isEqualTo(100);
+        assertThat(SignalRateLimiter.categoryOf("/app/other")).isNull();
+        assertThat(SignalRateLimiter.categoryOf("/app/signal/answer")).isEqualTo(SignalRateLimiter.Category.OFFER);
+        assertThat(SignalRateLimiter.categoryOf("/app/signal/message")).isEqualTo(SignalRateLimiter.Category.MESSAGE);
+    }
+
+    private int admitted(String sessionId, String destination, int frames) {
+        int admitted = 0;
+        for (int i = 0; i < frames; i++) {
+            if (send(sessionId, destination) != null) {
+                admitted++;
+            }
+        }
+        return admitted;
+    }
+
+    private Message<?> send(String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        return limiter.preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), null);
+    }
+}
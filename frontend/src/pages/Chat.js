@@ -5,6 +5,7 @@ import authService from '../services/authService';
 import userService from '../services/userService';
 import groupService from '../services/groupService';
 import friendService from '../services/friendService';
+import messageService from '../services/messageService';
 import signalingService from '../services/signaling';
 import webrtcService from '../services/webrtc';
 import UserList from '../components/UserList';
@@ -89,6 +90,7 @@ function Chat() {
     const userGroups = await groupService.getUserGroups();
     setGroups(userGroups);
     groupsRef.current = userGroups;
+    signalingService.setGroups(userGroups);
     
     // Fetch friends
     const friendsList = await friendService.getFriends(currentUser.userId);
@@ -107,6 +109,7 @@ function Chat() {
       async () => {
         setConnectionStatus('online');
         await loadOnlinePeers();
+        await syncMessages();
       },
       (error) => {
         console.error('Signaling error:', error);
@@ -219,6 +222,31 @@ function Chat() {
       webrtcService.closePeerConnection(peerId);
     });
 
+    // Frames of relay-mode groups arrive through the server instead of a data channel
+    signalingService.onGroupMessage((fromPeerId, data) => {
+      const isNew = messageService.isNew(data.conversationKey, data.seq);
+      messageService.markSeen(data.conversationKey, data.seq);
+      if (isNew && fromPeerId !== currentUser.peerId) {
+        webrtcService.handleData(fromPeerId, data);
+      }
+    });
+
+    // Direct messages sent through the server while no data channel was open,
+    // or queued by it while we were offline. Our own sends come back once
+    // with their seq, which only needs recording so a sync skips them.
+    signalingService.onDirectMessage((fromPeerId, data) => {
+      if (!messageService.isNew(data.conversationKey, data.seq)) return;
+      messageService.markSeen(data.conversationKey, data.seq);
+      if (fromPeerId !== currentUser.peerId) {
+        webrtcService.handleData(fromPeerId, data);
+      }
+    });
+
+    // Friend requests and group invitations addressed to us
+    signalingService.onRequestReceived(() => {
+      refreshRequests();
+    });
+
     signalingService.onGroupMemberJoined(async (payload) => {
       console.log('🎉 Group member joined:', payload);
       const { groupId, newMemberPeerId, newMemberUsername, totalMembers } = payload;
@@ -227,6 +255,7 @@ function Chat() {
       const userGroups = await groupService.getUserGroups();
       setGroups(userGroups);
       groupsRef.current = userGroups;
+      signalingService.setGroups(userGroups);
       
       // If this is the currently open group, reconnect mesh
       if (selectedGroup?.groupId === groupId) {
@@ -250,6 +279,7 @@ function Chat() {
       const userGroups = await groupService.getUserGroups();
       setGroups(userGroups);
       groupsRef.current = userGroups;
+      signalingService.setGroups(userGroups);
       
       // If I'm the one who left, close the group chat
       if (leftMemberId === currentUser.userId) {
@@ -605,6 +635,7 @@ function Chat() {
         const userGroups = await groupService.getUserGroups();
         setGroups(userGroups);
         groupsRef.current = userGroups;
+        signalingService.setGroups(userGroups);
         showNotification('Group invitation accepted!', 'success');
       } else {
         showNotification('Request accepted!', 'success');
@@ -634,17 +665,17 @@ function Chat() {
     }
   };
   
-  // Auto-refresh pending requests every 5 seconds
+  // New requests are pushed over the signaling connection; poll slowly as a fallback
   useEffect(() => {
     if (!currentUser) return;
     
     // Initial fetch
     refreshRequests();
     
-    // Set up interval for auto-refresh
+    // Revalidate periodically; unchanged lists come back as 304
     const interval = setInterval(() => {
       refreshRequests();
-    }, 5000); // Refresh every 5 seconds
+    }, 30000); // Refresh every 30 seconds
     
     return () => clearInterval(interval);
     // eslint-disable-next-line react-hooks/exhaustive-deps
@@ -712,18 +743,63 @@ function Chat() {
 
     try {
       await webrtcService.sendMessage(targetPeerId, message, null, signalingService);
-      
-      // Add to local conversation
-      addMessage(targetPeerId, {
-        from: currentUser.peerId,
-        content: message,
-        timestamp: Date.now(),
-        type: 'sent'
-      });
     } catch (error) {
-      console.error('Error sending message:', error);
-      showNotification('Failed to send message. Please ensure you are connected to the peer.', 'error');
+      // No data channel: send through the server, which keeps it for offline peers
+      try {
+        console.log(`📮 Data channel unavailable, sending via server: ${error.message}`);
+        signalingService.sendDirectMessage(targetPeerId, message);
+      } catch (fallbackError) {
+        console.error('Error sending message:', fallbackError);
+        showNotification('Failed to send message. Please ensure you are connected to the peer.', 'error');
+        return;
+      }
     }
+      
+    // Add to local conversation
+    addMessage(targetPeerId, {
+      from: currentUser.peerId,
+      content: message,
+      timestamp: Date.now(),
+      type: 'sent'
+    });
+  };
+
+  /**
+   * Catch up on messages stored by the server while we were away
+   */
+  const syncMessages = async () => {
+    const conversationKeys = [
+      ...friendsRef.current.map(friendId => messageService.directKey(currentUser.userId, friendId)),
+      ...groupsRef.current.map(group => messageService.groupKey(group.groupId))
+    ];
+    if (conversationKeys.length === 0) return;
+
+    const pages = await messageService.sync(conversationKeys);
+    Object.values(pages).forEach(page => {
+      page.messages.forEach(stored => {
+        if (!messageService.isNew(stored.conversationKey, stored.seq)) return;
+        const mine = stored.senderId === currentUser.userId;
+        const sender = usersRef.current.find(u => u.userId === stored.senderId);
+        const entry = {
+          from: mine ? currentUser.peerId : sender?.peerId,
+          content: stored.content,
+          timestamp: stored.timestamp,
+          type: mine ? 'sent' : 'received'
+        };
+
+        if (stored.conversationKey.startsWith('g:')) {
+          addGroupMessage(Number(stored.conversationKey.slice(2)), entry);
+        } else {
+          const [, firstId, secondId] = stored.conversationKey.split(':').map(Number);
+          const otherUserId = firstId === currentUser.userId ? secondId : firstId;
+          const other = usersRef.current.find(u => u.userId === otherUserId);
+          if (other?.peerId) {
+            addMessage(other.peerId, entry);
+          }
+        }
+        messageService.markSeen(stored.conversationKey, stored.seq);
+      });
+    });
   };
 
   const sendFile = async (file, peerId = null) => {
@@ -873,6 +949,7 @@ function Chat() {
       setGroups(prev => {
         const updated = [...prev, newGroup];
         groupsRef.current = updated;
+        signalingService.setGroups(updated);
         return updated;
       });
       await handleSelectGroup(newGroup);
@@ -917,16 +994,10 @@ function Chat() {
     try {
       console.log(`📨 Inviting ${memberIds.length} members to group ${selectedGroup.groupId}...`);
       
-      // Send friend requests for group invitation
-      for (const memberId of memberIds) {
-        try {
-          await friendService.addFriend(memberId, currentUser.userId);
-        } catch (error) {
-          console.error(`Failed to invite ${memberId}:`, error);
-        }
-      }
+      // Send all group invitations in one request
+      const { invitationsSent } = await groupService.inviteMembers(selectedGroup.groupId, memberIds);
       
-      showNotification(`Sent invitations to ${memberIds.length} friend(s)!`, 'success');
+      showNotification(`Sent invitations to ${invitationsSent} friend(s)!`, 'success');
     } catch (error) {
       console.error('Error inviting members:', error);
       showNotification('Failed to invite members: ' + error.message, 'error');
@@ -5,6 +5,19 @@ class AuthService {
   constructor() {
     this.token = localStorage.getItem('token');
     this.user = JSON.parse(localStorage.getItem('user') || 'null');
+
+    // The API identifies the user by token only; once it is rejected, sign in again
+    axios.interceptors.response.use(
+      response => response,
+      error => {
+        if (error.response?.status === 401 && this.token) {
+          console.warn('🔐 Session expired, signing out');
+          this.logout();
+          window.location.href = '/login';
+        }
+        return Promise.reject(error);
+      }
+    );
   }
 
   async register(username, password) {
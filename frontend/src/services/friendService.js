@@ -6,7 +6,6 @@ class FriendService {
   async getFriends(userId) {
     try {
       const response = await axios.get(`${API_BASE_URL}/friends`, {
-        params: { userId },
         headers: {
           Authorization: `Bearer ${authService.getToken()}`
         }
@@ -21,7 +20,7 @@ class FriendService {
   async addFriend(friendId, userId) {
     try {
       await axios.post(`${API_BASE_URL}/requests/friend`, null, {
-        params: { friendId, userId },
+        params: { friendId },
         headers: {
           Authorization: `Bearer ${authService.getToken()}`
         }
@@ -36,12 +35,25 @@ class FriendService {
   async getRequests(userId) {
     try {
       console.log('🔔 Fetching pending requests for userId:', userId);
+      // Revalidate the last list we got; the server answers 304 while it is unchanged
+      const cached = this.pendingRequestsCache;
+      const headers = {
+        Authorization: `Bearer ${authService.getToken()}`
+      };
+      if (cached?.userId === userId) {
+        headers['If-None-Match'] = cached.etag;
+      }
+
       const response = await axios.get(`${API_BASE_URL}/requests/pending`, {
-        params: { userId },
-        headers: {
-          Authorization: `Bearer ${authService.getToken()}`
-        }
+        headers,
+        validateStatus: status => status === 200 || status === 304
       });
+      if (response.status === 304) {
+        return cached.requests;
+      }
+
+      const etag = response.headers.etag;
+      this.pendingRequestsCache = etag ? { userId, etag, requests: response.data } : null;
       console.log('🔔 Pending requests response:', response.data);
       return response.data;
     } catch (error) {
@@ -54,7 +66,6 @@ class FriendService {
   async acceptRequest(requestId, userId) {
     try {
       await axios.post(`${API_BASE_URL}/requests/${requestId}/accept`, null, {
-        params: { userId },
         headers: {
           Authorization: `Bearer ${authService.getToken()}`
         }
@@ -69,7 +80,6 @@ class FriendService {
   async rejectRequest(requestId, userId) {
     try {
       await axios.post(`${API_BASE_URL}/requests/${requestId}/reject`, null, {
-        params: { userId },
         headers: {
           Authorization: `Bearer ${authService.getToken()}`
         }
@@ -84,7 +94,6 @@ class FriendService {
   async removeFriend(friendId, userId) {
     try {
       await axios.delete(`${API_BASE_URL}/friends/${friendId}`, {
-        params: { userId },
         headers: {
           Authorization: `Bearer ${authService.getToken()}`
         }
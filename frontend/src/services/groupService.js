@@ -10,7 +10,6 @@ class GroupService {
         `${API_BASE_URL}/groups`,
         {
           groupName,
-          creatorId: currentUser.userId,
           memberIds: [currentUser.userId, ...memberIds] // Include creator - backend will skip invitation for them
         },
         {
@@ -26,6 +25,26 @@ class GroupService {
     }
   }
 
+  async inviteMembers(groupId, memberIds) {
+    try {
+      const response = await axios.post(
+        `${API_BASE_URL}/groups/${groupId}/invitations`,
+        {
+          memberIds
+        },
+        {
+          headers: {
+            Authorization: `Bearer ${authService.getToken()}`
+          }
+        }
+      );
+      return response.data;
+    } catch (error) {
+      console.error('Error inviting members:', error);
+      throw error;
+    }
+  }
+
   async getUserGroups() {
     try {
       const currentUser = authService.getUser();
@@ -0,0 +1,122 @@
+import axios from 'axios';
+import { API_BASE_URL } from '../config/api';
+import authService from './authService';
+
+class MessageService {
+  /**
+   * Conversation key of two users, the same from either side
+   */
+  directKey(userId, otherUserId) {
+    return `d:${Math.min(userId, otherUserId)}:${Math.max(userId, otherUserId)}`;
+  }
+
+  groupKey(groupId) {
+    return `g:${groupId}`;
+  }
+
+  /**
+   * Read position per conversation, kept across reloads: every seq up to
+   * `cursor` has been seen, plus the seqs in `seen` above it. Messages can
+   * arrive out of order, so a later seq must not hide an earlier one.
+   */
+  getPositions() {
+    const currentUser = authService.getUser();
+    const stored = JSON.parse(localStorage.getItem(`messageCursors:${currentUser?.userId}`) || '{}');
+    const positions = {};
+    Object.entries(stored).forEach(([key, value]) => {
+      // Older clients stored a bare high-water seq
+      positions[key] = typeof value === 'number' ? { cursor: value, seen: [] } : value;
+    });
+    return positions;
+  }
+
+  savePositions(positions) {
+    const currentUser = authService.getUser();
+    localStorage.setItem(`messageCursors:${currentUser?.userId}`, JSON.stringify(positions));
+  }
+
+  /**
+   * Seq up to which every message of each conversation has been seen; sync
+   * asks for what comes after, so gaps are fetched again
+   */
+  getCursors() {
+    const cursors = {};
+    Object.entries(this.getPositions()).forEach(([key, position]) => {
+      cursors[key] = position.cursor;
+    });
+    return cursors;
+  }
+
+  /**
+   * Whether a stored message has not been seen yet; the same message can
+   * arrive from the server push, the offline queue and a sync
+   */
+  isNew(conversationKey, seq) {
+    if (!conversationKey || !seq) return true;
+    const position = this.getPositions()[conversationKey];
+    if (!position) return true;
+    return seq > position.cursor && !position.seen.includes(seq);
+  }
+
+  markSeen(conversationKey, seq) {
+    if (!conversationKey || !seq) return;
+
+    const positions = this.getPositions();
+    const position = positions[conversationKey] || { cursor: 0, seen: [] };
+    if (seq <= position.cursor || position.seen.includes(seq)) return;
+
+    const seen = new Set(position.seen);
+    seen.add(seq);
+    let cursor = position.cursor;
+    while (seen.has(cursor + 1)) {
+      cursor++;
+      seen.delete(cursor);
+    }
+    positions[conversationKey] = { cursor, seen: [...seen].sort((a, b) => a - b) };
+    this.savePositions(positions);
+  }
+
+  async getHistory(conversationKey, before = null, limit = 50) {
+    try {
+      const response = await axios.get(
+        `${API_BASE_URL}/messages/${encodeURIComponent(conversationKey)}`,
+        {
+          params: { before, limit },
+          headers: {
+            Authorization: `Bearer ${authService.getToken()}`
+          }
+        }
+      );
+      return response.data;
+    } catch (error) {
+      console.error('Error fetching message history:', error);
+      return { messages: [], nextCursor: null, hasMore: false };
+    }
+  }
+
+  /**
+   * Fetch what was stored since the last seen seq of each conversation
+   */
+  async sync(conversationKeys) {
+    try {
+      const cursors = this.getCursors();
+      const body = {};
+      conversationKeys.forEach(key => {
+        body[key] = cursors[key] || 0;
+      });
+
+      const response = await axios.post(`${API_BASE_URL}/messages/sync`, body, {
+        headers: {
+          Authorization: `Bearer ${authService.getToken()}`
+        }
+      });
+      return response.data;
+    } catch (error) {
+      console.error('Error syncing messages:', error);
+      return {};
+    }
+  }
+}
+
+const messageService = new MessageService();
+export default messageService;
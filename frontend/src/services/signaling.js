@@ -1,6 +1,10 @@
 import { Client } from '@stomp/stompjs';
 import SockJS from 'sockjs-client';
 import { WS_BASE_URL } from '../config/api';
+import authService from './authService';
+
+// Window for batching trickled ICE candidates to the same peer
+const ICE_BATCH_WINDOW_MS = 20;
 
 class SignalingService {
   constructor() {
@@ -13,6 +17,10 @@ class SignalingService {
     this.onPeerOfflineCallback = null;
     this.onCallRequestCallback = null;
     this.onCallAcceptCallback = null;
+    this.pendingIceCandidates = new Map();
+    this.groupIds = [];
+    this.relayGroupIds = new Set();
+    this.groupSubscriptions = new Map();
   }
 
   /**
@@ -23,6 +31,9 @@ class SignalingService {
 
     this.client = new Client({
       webSocketFactory: () => new SockJS(WS_BASE_URL),
+      connectHeaders: {
+        Authorization: `Bearer ${authService.getToken()}`
+      },
       reconnectDelay: 5000,
       heartbeatIncoming: 4000,
       heartbeatOutgoing: 4000,
@@ -33,7 +44,9 @@ class SignalingService {
       onConnect: () => {
         setTimeout(() => {
           this.subscribeToSignals();
-          this.subscribeToPeers();
+          // Subscriptions do not survive a reconnect
+          this.groupSubscriptions.clear();
+          this.subscribeToGroups();
           this.notifyOnline();
           if (onConnected) onConnected();
         }, 100);
@@ -58,93 +71,148 @@ class SignalingService {
 
     const peerTopic = `/topic/peer/${this.peerId}`;
     console.log(`📡 Subscribing to personal topic: ${peerTopic}`);
-    this.client.subscribe(peerTopic, (message) => {
-      const signal = JSON.parse(message.body);
-      console.log(`📨 [${this.peerId}] Received signal:`, signal.type, `from: ${signal.from}, to: ${signal.to}`);
-
-      switch (signal.type) {
-        case 'OFFER':
-          if (this.onOfferCallback) {
-            this.onOfferCallback(signal.from, signal.payload);
-          }
-          break;
-
-        case 'ANSWER':
-          if (this.onAnswerCallback) {
-            this.onAnswerCallback(signal.from, signal.payload);
-          }
-          break;
-
-        case 'ICE_CANDIDATE':
-          if (this.onIceCandidateCallback) {
-            this.onIceCandidateCallback(signal.from, signal.payload);
-          }
-          break;
-
-        case 'CALL_REQUEST':
-          console.log(`📲 CALL_REQUEST: from ${signal.from} to ${signal.to}`);
-          if (this.onCallRequestCallback) {
-            this.onCallRequestCallback(signal.from, signal.payload);
-          }
-          break;
-
-        case 'CALL_ACCEPT':
-          console.log(`✅ CALL_ACCEPT: from ${signal.from} to ${signal.to}`);
-          if (this.onCallAcceptCallback) {
-            this.onCallAcceptCallback(signal.from, signal.payload);
-          }
-          break;
-
-        case 'GROUP_MEMBER_JOINED':
-          console.log(`👥 GROUP_MEMBER_JOINED:`, signal.payload);
-          if (this.onGroupMemberJoinedCallback) {
-            this.onGroupMemberJoinedCallback(signal.payload);
-          }
-          break;
-
-        case 'GROUP_MEMBER_LEFT':
-          console.log(`👋 GROUP_MEMBER_LEFT:`, signal.payload);
-          if (this.onGroupMemberLeftCallback) {
-            this.onGroupMemberLeftCallback(signal.payload);
-          }
-          break;
-
-        default:
-          break;
-      }
-    });
+    this.client.subscribe(peerTopic, (message) => this.handleSignal(message));
+    // Typing indicators are addressed to the session user
+    this.client.subscribe('/user/queue/signal', (message) => this.handleSignal(message));
+  }
+
+  /**
+   * Track the groups the user belongs to and keep one subscription
+   * per group topic for group-wide events
+   */
+  setGroups(groups) {
+    this.groupIds = groups.map(g => g.groupId);
+    this.relayGroupIds = new Set(groups.filter(g => g.deliveryMode === 'RELAY').map(g => g.groupId));
+    this.subscribeToGroups();
   }
 
   /**
-   * Subscribe to peer status updates
+   * Large groups send messages through the server instead of the WebRTC mesh
    */
-  subscribeToPeers() {
+  isRelayGroup(groupId) {
+    return this.relayGroupIds.has(groupId);
+  }
+
+  subscribeToGroups() {
     if (!this.client || !this.client.connected) {
       return;
     }
 
-    this.client.subscribe('/topic/peers', (message) => {
-      const signal = JSON.parse(message.body);
-      
-      switch (signal.type) {
-        case 'PEER_ONLINE':
-          if (this.onPeerOnlineCallback && signal.from !== this.peerId) {
-            this.onPeerOnlineCallback(signal.from);
-          }
-          break;
-
-        case 'PEER_OFFLINE':
-          if (this.onPeerOfflineCallback && signal.from !== this.peerId) {
-            this.onPeerOfflineCallback(signal.from);
-          }
-          break;
-
-        default:
-          break;
+    this.groupSubscriptions.forEach((subscription, groupId) => {
+      if (!this.groupIds.includes(groupId)) {
+        subscription.unsubscribe();
+        this.groupSubscriptions.delete(groupId);
+      }
+    });
+
+    this.groupIds.forEach((groupId) => {
+      if (!this.groupSubscriptions.has(groupId)) {
+        const subscription = this.client.subscribe(`/topic/group/${groupId}`, (message) => this.handleSignal(message));
+        this.groupSubscriptions.set(groupId, subscription);
       }
     });
   }
 
+  /**
+   * Dispatch a signal received on the personal or a group topic
+   */
+  handleSignal(message) {
+    const signal = JSON.parse(message.body);
+    console.log(`📨 [${this.peerId}] Received signal:`, signal.type, `from: ${signal.from}, to: ${signal.to}`);
+
+    switch (signal.type) {
+      case 'OFFER':
+        if (this.onOfferCallback) {
+          this.onOfferCallback(signal.from, signal.payload);
+        }
+        break;
+
+      case 'ANSWER':
+        if (this.onAnswerCallback) {
+          this.onAnswerCallback(signal.from, signal.payload);
+        }
+        break;
+
+      case 'ICE_CANDIDATE':
+        if (this.onIceCandidateCallback) {
+          this.onIceCandidateCallback(signal.from, signal.payload);
+        }
+        break;
+
+      case 'ICE_CANDIDATES':
+        if (this.onIceCandidateCallback && Array.isArray(signal.payload)) {
+          signal.payload.forEach((candidate) => this.onIceCandidateCallback(signal.from, candidate));
+        }
+        break;
+
+      case 'CALL_REQUEST':
+        console.log(`📲 CALL_REQUEST: from ${signal.from} to ${signal.to}`);
+        if (this.onCallRequestCallback) {
+          this.onCallRequestCallback(signal.from, signal.payload);
+        }
+        break;
+
+      case 'CALL_ACCEPT':
+        console.log(`✅ CALL_ACCEPT: from ${signal.from} to ${signal.to}`);
+        if (this.onCallAcceptCallback) {
+          this.onCallAcceptCallback(signal.from, signal.payload);
+        }
+        break;
+
+      // Presence of friends and group members
+      case 'PEER_ONLINE':
+        if (this.onPeerOnlineCallback && signal.from !== this.peerId) {
+          this.onPeerOnlineCallback(signal.from);
+        }
+        break;
+
+      case 'PEER_OFFLINE':
+        if (this.onPeerOfflineCallback && signal.from !== this.peerId) {
+          this.onPeerOfflineCallback(signal.from);
+        }
+        break;
+
+      case 'GROUP_MEMBER_JOINED':
+        console.log(`👥 GROUP_MEMBER_JOINED:`, signal.payload);
+        if (this.onGroupMemberJoinedCallback) {
+          this.onGroupMemberJoinedCallback(signal.payload);
+        }
+        break;
+
+      case 'MESSAGE':
+        if (this.onDirectMessageCallback) {
+          this.onDirectMessageCallback(signal.from, signal.payload);
+        }
+        break;
+
+      case 'GROUP_MESSAGE':
+        // Includes our own frames echoed back by the group topic; text frames
+        // carry the seq the server stored them under, so Chat records our own
+        // by seq and shows only other members' frames it has not seen
+        if (this.onGroupMessageCallback) {
+          this.onGroupMessageCallback(signal.from, signal.payload);
+        }
+        break;
+
+      case 'REQUEST_RECEIVED':
+        console.log(`🔔 REQUEST_RECEIVED:`, signal.payload);
+        if (this.onRequestReceivedCallback) {
+          this.onRequestReceivedCallback(signal.payload);
+        }
+        break;
+
+      case 'GROUP_MEMBER_LEFT':
+        console.log(`👋 GROUP_MEMBER_LEFT:`, signal.payload);
+        if (this.onGroupMemberLeftCallback) {
+          this.onGroupMemberLeftCallback(signal.payload);
+        }
+        break;
+
+      default:
+        break;
+    }
+  }
+
   /**
    * Notify server that we're online
    */
@@ -219,19 +287,36 @@ class SignalingService {
 
   /**
    * Send ICE candidate to peer
+   * Candidates gathered in the same tick are batched into one frame
    */
   sendIceCandidate(toPeerId, candidate) {
     if (!this.client || !this.client.connected) {
       return;
     }
 
+    let batch = this.pendingIceCandidates.get(toPeerId);
+    if (!batch) {
+      batch = [];
+      this.pendingIceCandidates.set(toPeerId, batch);
+      setTimeout(() => this.flushIceCandidates(toPeerId), ICE_BATCH_WINDOW_MS);
+    }
+    batch.push(candidate);
+  }
+
+  flushIceCandidates(toPeerId) {
+    const batch = this.pendingIceCandidates.get(toPeerId);
+    this.pendingIceCandidates.delete(toPeerId);
+    if (!batch || !this.client || !this.client.connected) {
+      return;
+    }
+
     this.client.publish({
-      destination: '/app/signal/ice-candidate',
+      destination: '/app/signal/ice-candidates',
       body: JSON.stringify({
-        type: 'ICE_CANDIDATE',
+        type: 'ICE_CANDIDATES',
         from: this.peerId,
         to: toPeerId,
-        payload: candidate,
+        payload: batch,
         timestamp: Date.now()
       })
     });
@@ -276,6 +361,46 @@ class SignalingService {
     });
   }
 
+  /**
+   * Send a text message through the server, which stores it and
+   * delivers it once the peer is online
+   */
+  sendDirectMessage(toPeerId, content) {
+    if (!this.client || !this.client.connected) {
+      throw new Error('Not connected to signaling server');
+    }
+
+    this.client.publish({
+      destination: '/app/signal/message',
+      body: JSON.stringify({
+        type: 'MESSAGE',
+        from: this.peerId,
+        to: toPeerId,
+        payload: { content },
+        timestamp: Date.now()
+      })
+    });
+  }
+
+  /**
+   * Send a group text or file frame once; the server fans it out to the group
+   */
+  sendGroupData(data) {
+    if (!this.client || !this.client.connected) {
+      throw new Error('Not connected to signaling server');
+    }
+
+    this.client.publish({
+      destination: '/app/signal/group-message',
+      body: JSON.stringify({
+        type: 'GROUP_MESSAGE',
+        from: this.peerId,
+        payload: data,
+        timestamp: Date.now()
+      })
+    });
+  }
+
   /**
    * Set callbacks
    */
@@ -315,6 +440,18 @@ class SignalingService {
     this.onGroupMemberLeftCallback = callback;
   }
 
+  onGroupMessage(callback) {
+    this.onGroupMessageCallback = callback;
+  }
+
+  onDirectMessage(callback) {
+    this.onDirectMessageCallback = callback;
+  }
+
+  onRequestReceived(callback) {
+    this.onRequestReceivedCallback = callback;
+  }
+
   /**
    * Disconnect from signaling server
    */
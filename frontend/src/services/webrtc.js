@@ -1,4 +1,8 @@
 import { ICE_SERVERS } from '../config/api';
+import signaling from './signaling';
+
+// Relayed file chunks must fit in one STOMP frame
+const RELAY_CHUNK_SIZE = 32000;
 
 class WebRTCService {
   constructor() {
@@ -87,41 +91,46 @@ class WebRTCService {
 
     dataChannel.onmessage = (event) => {
       try {
-        const data = JSON.parse(event.data);
-        
-        switch (data.type) {
-          case 'text':
-            if (this.onMessageCallback) {
-              this.onMessageCallback(peerId, data);
-            }
-            break;
-          case 'typing':
-            if (this.onTypingCallback) {
-              this.onTypingCallback(peerId, data.isTyping);
-            }
-            break;
-          case 'file':
-            if (this.onFileCallback) {
-              this.onFileCallback(peerId, data);
-            }
-            break;
-          case 'file-start':
-          case 'file-chunk':
-          case 'file-end':
-            // File chunking handled by onMessage callback in Chat.js
-            if (this.onMessageCallback) {
-              this.onMessageCallback(peerId, data);
-            }
-            break;
-          default:
-            console.warn('Unknown message type:', data.type);
-        }
+        this.handleData(peerId, JSON.parse(event.data));
       } catch (error) {
         console.error('Error parsing P2P message:', error);
       }
     };
   }
 
+  /**
+   * Dispatch a frame from a peer, received over a data channel or relayed by the server
+   */
+  handleData(peerId, data) {
+    switch (data.type) {
+      case 'text':
+        if (this.onMessageCallback) {
+          this.onMessageCallback(peerId, data);
+        }
+        break;
+      case 'typing':
+        if (this.onTypingCallback) {
+          this.onTypingCallback(peerId, data.isTyping);
+        }
+        break;
+      case 'file':
+        if (this.onFileCallback) {
+          this.onFileCallback(peerId, data);
+        }
+        break;
+      case 'file-start':
+      case 'file-chunk':
+      case 'file-end':
+        // File chunking handled by onMessage callback in Chat.js
+        if (this.onMessageCallback) {
+          this.onMessageCallback(peerId, data);
+        }
+        break;
+      default:
+        console.warn('Unknown message type:', data.type);
+    }
+  }
+
   /**
    * Create and send offer to remote peer
    */
@@ -537,6 +546,11 @@ class WebRTCService {
    * Connect to all peers in a group (Mesh network)
    */
   async connectToGroup(groupId, peerIds, signalingService) {
+    if (signaling.isRelayGroup(groupId)) {
+      console.log(`🔁 Group ${groupId} uses server relay, skipping mesh`);
+      return;
+    }
+
     console.log(`🔗 Connecting to group ${groupId} with ${peerIds.length} peers`);
     
     if (!this.groupConnections.has(groupId)) {
@@ -580,6 +594,16 @@ class WebRTCService {
    * Auto-creates connections if needed
    */
   async sendGroupMessage(groupId, message, signalingService = null) {
+    if (signaling.isRelayGroup(groupId)) {
+      signaling.sendGroupData({
+        type: 'text',
+        content: message,
+        timestamp: Date.now(),
+        groupId: groupId
+      });
+      return { sent: 1, failed: 0 };
+    }
+
     const peerIds = this.groupConnections.get(groupId);
     
     if (!peerIds || peerIds.size === 0) {
@@ -614,6 +638,11 @@ class WebRTCService {
    * Auto-creates connections if needed
    */
   async sendGroupFile(groupId, file, signalingService = null) {
+    if (signaling.isRelayGroup(groupId)) {
+      await this.sendRelayedGroupFile(groupId, file);
+      return { sent: 1, failed: 0 };
+    }
+
     const peerIds = this.groupConnections.get(groupId);
     
     if (!peerIds || peerIds.size === 0) {
@@ -643,6 +672,57 @@ class WebRTCService {
     return { sent: sentCount, failed: failedPeers.length };
   }
 
+  /**
+   * Send a file to a relay-mode group as file-start / file-chunk / file-end
+   * frames through the signaling server
+   */
+  sendRelayedGroupFile(groupId, file) {
+    const reader = new FileReader();
+
+    return new Promise((resolve, reject) => {
+      reader.onload = () => {
+        try {
+          const base64Data = reader.result;
+          const actualData = base64Data.substring(base64Data.indexOf(',') + 1);
+
+          signaling.sendGroupData({
+            type: 'file-start',
+            fileName: file.name,
+            fileType: file.type,
+            fileSize: file.size,
+            totalChunks: Math.ceil(actualData.length / RELAY_CHUNK_SIZE),
+            timestamp: Date.now(),
+            groupId: groupId
+          });
+
+          for (let i = 0; i < actualData.length; i += RELAY_CHUNK_SIZE) {
+            signaling.sendGroupData({
+              type: 'file-chunk',
+              chunkIndex: Math.floor(i / RELAY_CHUNK_SIZE),
+              data: actualData.substring(i, i + RELAY_CHUNK_SIZE),
+              groupId: groupId
+            });
+          }
+
+          signaling.sendGroupData({
+            type: 'file-end',
+            fileName: file.name,
+            groupId: groupId
+          });
+
+          console.log(`✅ Relayed file ${file.name} to group ${groupId}`);
+          resolve();
+        } catch (error) {
+          console.error('❌ Error relaying file:', error);
+          reject(error);
+        }
+      };
+
+      reader.onerror = reject;
+      reader.readAsDataURL(file);
+    });
+  }
+
   /**
    * Disconnect from a group
    */